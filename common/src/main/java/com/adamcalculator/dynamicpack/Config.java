@@ -5,6 +5,7 @@ import com.adamcalculator.dynamicpack.pack.dynamicrepo.DynamicRepoSyncBuilder;
 import com.adamcalculator.dynamicpack.util.FilesLog;
 import com.adamcalculator.dynamicpack.util.Out;
 import com.adamcalculator.dynamicpack.util.PathsUtil;
+import com.adamcalculator.dynamicpack.util.Urls;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -19,11 +20,15 @@ public class Config {
     private int formatVersion = 1; // do not touch
     private int networkBufferSize = 1024;
     private int networkMultithreadDownloadThreads = 12;
+    private int networkMultithreadDownloadThreadsPerHost = 6; // connections to one host, like browsers over HTTP/1.1
     private boolean logAllFilesChanges = false;
     private boolean autoUpdateAtLaunch = true;
     private boolean updateOnlyEnabledPacks = true;
     private boolean debugIgnoreHiddenFlagInContents = false;
     private boolean debugLogs = false;
+    private boolean dynamicRepoProbeUnknownSizes = true; // HEAD requests for files without size in manifest
+    private boolean dynamicRepoTrustAtLaunch = false; // sha1 of files checked by IntegrityScrubber after launch
+    private boolean networkHttpClient = true; // shared HTTP/2 client; URLConnection otherwise
 
     private static Config createDefConfig() {
         Config config = new Config();
@@ -67,7 +72,11 @@ public class Config {
         SharedConstrains.URLS_BUFFER_SIZE = config.networkBufferSize;
         SharedConstrains.DEBUG_LOGS = config.debugLogs;
         DynamicRepoSyncBuilder.DOWNLOAD_THREADS_COUNT = config.networkMultithreadDownloadThreads;
+        DynamicRepoSyncBuilder.DOWNLOAD_HOST_THREADS_COUNT = config.networkMultithreadDownloadThreadsPerHost;
         FilesLog.LOG_ALL_CHANGES = config.logAllFilesChanges;
+        DynamicRepoSyncBuilder.PROBE_UNKNOWN_SIZES = config.dynamicRepoProbeUnknownSizes;
+        DynamicRepoSyncBuilder.TRUST_AT_LAUNCH = config.dynamicRepoTrustAtLaunch;
+        Urls.USE_HTTP_CLIENT = config.networkHttpClient;
     }
 
     public static Config getInstance() {
@@ -89,6 +98,12 @@ public class Config {
             Out.warn("Config invalid 'networkMultithreadDownloadThreads'. Sets to " + networkMultithreadDownloadThreads);
         }
 
+        if (networkMultithreadDownloadThreadsPerHost <= 0 || networkMultithreadDownloadThreadsPerHost >= 256) {
+            networkMultithreadDownloadThreadsPerHost = 6;
+            save = true;
+            Out.warn("Config invalid 'networkMultithreadDownloadThreadsPerHost'. Sets to " + networkMultithreadDownloadThreadsPerHost);
+        }
+
         if (save) {
             save();
         }
@@ -131,6 +146,15 @@ public class Config {
         updateStaticVariables(this);
     }
 
+    public int getNetworkMultithreadDownloadThreadsPerHost() {
+        return networkMultithreadDownloadThreadsPerHost;
+    }
+
+    public void setNetworkMultithreadDownloadThreadsPerHost(int networkMultithreadDownloadThreadsPerHost) {
+        this.networkMultithreadDownloadThreadsPerHost = networkMultithreadDownloadThreadsPerHost;
+        updateStaticVariables(this);
+    }
+
     public boolean dynamicRepoIsIgnoreHiddenContentFlag() {
         return debugIgnoreHiddenFlagInContents;
     }
@@ -156,6 +180,33 @@ public class Config {
         this.autoUpdateAtLaunch = autoUpdateAtLaunch;
     }
 
+    public boolean isDynamicRepoProbeUnknownSizes() {
+        return dynamicRepoProbeUnknownSizes;
+    }
+
+    public void setDynamicRepoProbeUnknownSizes(boolean dynamicRepoProbeUnknownSizes) {
+        this.dynamicRepoProbeUnknownSizes = dynamicRepoProbeUnknownSizes;
+        updateStaticVariables(this);
+    }
+
+    public boolean isNetworkHttpClient() {
+        return networkHttpClient;
+    }
+
+    public void setNetworkHttpClient(boolean networkHttpClient) {
+        this.networkHttpClient = networkHttpClient;
+        updateStaticVariables(this);
+    }
+
+    public boolean isDynamicRepoTrustAtLaunch() {
+        return dynamicRepoTrustAtLaunch;
+    }
+
+    public void setDynamicRepoTrustAtLaunch(boolean dynamicRepoTrustAtLaunch) {
+        this.dynamicRepoTrustAtLaunch = dynamicRepoTrustAtLaunch;
+        updateStaticVariables(this);
+    }
+
     public boolean isUpdateOnlyEnabledPacks() {
         return updateOnlyEnabledPacks;
     }
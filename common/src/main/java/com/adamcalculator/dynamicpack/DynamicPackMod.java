@@ -3,6 +3,11 @@ package com.adamcalculator.dynamicpack;
 import com.adamcalculator.dynamicpack.client.GameStartSyncing;
 import com.adamcalculator.dynamicpack.pack.DynamicResourcePack;
 import com.adamcalculator.dynamicpack.pack.Remote;
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.ContentManifestStore;
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.DynamicRepoSyncBuilder;
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.IntegrityScrubber;
+import com.adamcalculator.dynamicpack.sync.DownloadScheduler;
+import com.adamcalculator.dynamicpack.util.HttpCache;
 import com.adamcalculator.dynamicpack.util.Loader;
 import com.adamcalculator.dynamicpack.util.Out;
 import org.jetbrains.annotations.ApiStatus;
@@ -27,6 +32,9 @@ public abstract class DynamicPackMod {
 	private Config config;
 	private PacksContainer packsContainer;
 	private GameStartSyncing gameStartSyncing;
+	private HttpCache httpCache;
+	private ContentManifestStore manifestStore;
+	private DownloadScheduler downloadScheduler;
 
 	protected DynamicPackMod() {
 	}
@@ -51,6 +59,10 @@ public abstract class DynamicPackMod {
 
 		// load config before logic and after files paths sets
 		config = Config.load();
+		this.httpCache = HttpCache.load(new File(configDir, "http_cache").toPath(), SharedConstrains.HTTP_CACHE_LIMIT);
+		this.manifestStore = new ContentManifestStore(new File(configDir, "manifests").toPath(), SharedConstrains.MANIFEST_STORE_LIMIT);
+		this.downloadScheduler = new DownloadScheduler(() -> DynamicRepoSyncBuilder.DOWNLOAD_THREADS_COUNT, () -> DynamicRepoSyncBuilder.DOWNLOAD_HOST_THREADS_COUNT);
+		Runtime.getRuntime().addShutdownHook(new Thread(downloadScheduler::shutdown, "DownloadSchedulerShutdown"));
 
 		Remote.initRemoteTypes();
 		Out.init(loader);
@@ -61,6 +73,9 @@ public abstract class DynamicPackMod {
 		this.gameStartSyncing = new GameStartSyncing();
 		if (Config.getInstance().isAutoUpdateAtLaunch()) {
 			this.gameStartSyncing.start();
+		} else {
+			// unverified files left from previous sessions
+			IntegrityScrubber.launch();
 		}
 	}
 
@@ -74,6 +89,11 @@ public abstract class DynamicPackMod {
 
 	public abstract void startManuallySync(DynamicResourcePack pack);
 
+	/**
+	 * Sync pack after contents toggled by user: only toggled contents processed
+	 */
+	public abstract void startContentsSync(DynamicResourcePack pack);
+
 	public abstract void needResourcesReload();
 
 	public abstract String getCurrentGameVersion();
@@ -180,4 +200,28 @@ public abstract class DynamicPackMod {
 	public static Config getConfig() {
 		return INSTANCE.config;
 	}
+
+	/**
+	 * @return null if mod not initialized (tests)
+	 */
+	@Nullable
+	public static HttpCache getHttpCache() {
+		return INSTANCE == null ? null : INSTANCE.httpCache;
+	}
+
+	/**
+	 * Network tasks of all syncs
+	 */
+	@NotNull
+	public static DownloadScheduler getDownloadScheduler() {
+		return INSTANCE.downloadScheduler;
+	}
+
+	/**
+	 * @return null if mod not initialized (tests)
+	 */
+	@Nullable
+	public static ContentManifestStore getManifestStore() {
+		return INSTANCE == null ? null : INSTANCE.manifestStore;
+	}
 }
\ No newline at end of file
@@ -114,7 +114,17 @@ public class InputValidator {
      * @return is sha1 string valid
      */
     public static boolean isHashValid(String hash) {
-        return hash != null && hash.length() == 40 && !hash.contains(" ");
+        if (hash == null || hash.length() != 40) {
+            return false;
+        }
+        // hex only: hash may be used in file name
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private static String safeOutput(String s) {
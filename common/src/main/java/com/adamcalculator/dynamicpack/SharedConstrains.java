@@ -29,11 +29,26 @@ public class SharedConstrains {
     public static final long MOD_MODTINTH_API_LIMIT = megabyte(8); // 8 MB of api
     public static final long GZIP_LIMIT = megabyte(50); // 50 MB of .gz file
     public static final long MOD_FILES_LIMIT = megabyte(8);
+    public static final long BUNDLE_FILE_SIZE_LIMIT = megabyte(256); // .zip bundle of files of content
     public static final String MODRINTH_URL = "https://modrinth.com/mod/dynamicpack";
     public static final long NETWORK_STAT_RESET_LIMIT = megabyte(3);
+    public static final long MANIFEST_STORE_LIMIT = megabyte(32); // verified content.json by hash
+    public static final long HTTP_CACHE_LIMIT = megabyte(64); // repo and content manifests cache on disk
 
     // Settings
     public static final int MAX_ATTEMPTS_TO_DOWNLOAD_FILE = 3;
+    public static final int HTTP_CONNECT_TIMEOUT_MS = 15000; // HttpClientTransport
+    public static final String DOWNLOAD_PART_SUFFIX = ".part"; // file downloaded and hashed before rename
+    public static final String DOWNLOAD_PART_META_SUFFIX = ".part.json"; // validator of .part for resume (PartialDownload)
+    public static final String DOWNLOAD_PARTS_DIR_NAME = "parts"; // in TEMP_DIR_NAME: .part files of PartialDownload
+    public static final String BUNDLES_DIR_NAME = "bundles"; // in TEMP_DIR_NAME: members of bundle staged until bundle verified
+    public static final long DOWNLOAD_RESUME_MIN_SIZE = megabyte(1); // smaller downloads restarted from zero
+    public static final int BUNDLE_MIN_FILES = 16; // needed files of bundle archive to download it instead of files
+    public static final int SIZE_PROBE_MAX_FILES = 512; // HEAD requests per sync for files without size
+    public static final int SIZE_PROBE_TIMEOUT_MS = 5000; // for all HEAD requests
+    public static final long UNKNOWN_FILE_SIZE_ESTIMATE = 16 * 1024; // if no known sizes for average
+    public static final long SCRUB_BYTES_PER_SECOND = 4 * 1024 * 1024; // read limit of IntegrityScrubber
+    public static final int SCRUB_SAVE_EVERY_FILES = 64;
 
     public static final String TEMP_DIR_NAME = "dynamicpack_f02ffd55_cd44_458a_8d58_e31b11313a53";
     public static int URLS_BUFFER_SIZE = 1024;
@@ -52,6 +67,7 @@ public class SharedConstrains {
                 """;
 
     public static Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    public static Gson GSON_COMPACT = new GsonBuilder().create(); // for big internal files (indexes, caches)
 
     private static final Set<String> ALLOWED_HOSTS = new HashSet<>();
     static {
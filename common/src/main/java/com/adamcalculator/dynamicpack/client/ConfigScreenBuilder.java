@@ -49,6 +49,14 @@ public class ConfigScreenBuilder {
                                 })
                                 .controller(it -> BooleanControllerBuilder.create(it).yesNoFormatter()).build())
 
+                        .option(Option.<Boolean>createBuilder()
+                                .name(Component.translatable("dynamicpack.screen.config.category.general.trustAtLaunch"))
+                                .description(OptionDescription.of(Component.translatable("dynamicpack.screen.config.category.general.trustAtLaunch.description")))
+                                .binding(Config.DEF.isDynamicRepoTrustAtLaunch(), () -> DynamicPackMod.getConfig().isDynamicRepoTrustAtLaunch(), newVal -> {
+                                    DynamicPackMod.getConfig().setDynamicRepoTrustAtLaunch(newVal);
+                                })
+                                .controller(it -> BooleanControllerBuilder.create(it).yesNoFormatter()).build())
+
                         .build())
                 .build();
     }
@@ -156,6 +164,22 @@ public class ConfigScreenBuilder {
                                         .range(1, 255))
                                 .build())
 
+                        .option(Option.<Boolean>createBuilder()
+                                .name(Component.translatable("dynamicpack.screen.config.category.network.probeUnknownSizes.name"))
+                                .description(OptionDescription.of(Component.translatable("dynamicpack.screen.config.category.network.probeUnknownSizes.description")))
+                                .binding(Config.DEF.isDynamicRepoProbeUnknownSizes(), () -> DynamicPackMod.getConfig().isDynamicRepoProbeUnknownSizes(), newVal -> {
+                                    DynamicPackMod.getConfig().setDynamicRepoProbeUnknownSizes(newVal);
+                                })
+                                .controller(it -> BooleanControllerBuilder.create(it).yesNoFormatter()).build())
+
+                        .option(Option.<Boolean>createBuilder()
+                                .name(Component.translatable("dynamicpack.screen.config.category.network.httpClient.name"))
+                                .description(OptionDescription.of(Component.translatable("dynamicpack.screen.config.category.network.httpClient.description")))
+                                .binding(Config.DEF.isNetworkHttpClient(), () -> DynamicPackMod.getConfig().isNetworkHttpClient(), newVal -> {
+                                    DynamicPackMod.getConfig().setNetworkHttpClient(newVal);
+                                })
+                                .controller(it -> BooleanControllerBuilder.create(it).yesNoFormatter()).build())
+
                         .build())
                 .build();
     }
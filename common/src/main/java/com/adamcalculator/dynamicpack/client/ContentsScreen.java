@@ -88,7 +88,7 @@ public class ContentsScreen extends Screen {
         Minecraft.getInstance().setScreen(this.parent);
         pack.removeDestroyListener(onPackReSync);
         if (syncOnExit) {
-            DynamicPackMod.getInstance().startManuallySync(pack);
+            DynamicPackMod.getInstance().startContentsSync(pack);
         }
     }
 
@@ -99,6 +99,12 @@ public abstract class DynamicPackModBase extends DynamicPackMod {
         syncThread.start();
     }
 
+    @Override
+    public void startContentsSync(DynamicResourcePack pack) {
+        SyncThread syncThread = new SyncThread("SyncThread-"+(DynamicPackMod.manuallySyncThreadCounter++), pack, false);
+        syncThread.start();
+    }
+
     @Override
     public String getCurrentGameVersion() {
         SharedConstants.tryDetectVersion();
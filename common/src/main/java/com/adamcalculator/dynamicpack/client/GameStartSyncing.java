@@ -2,6 +2,7 @@ package com.adamcalculator.dynamicpack.client;
 
 import com.adamcalculator.dynamicpack.Config;
 import com.adamcalculator.dynamicpack.DynamicPackMod;
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.IntegrityScrubber;
 import com.adamcalculator.dynamicpack.status.StatusChecker;
 import com.adamcalculator.dynamicpack.sync.SyncBuilder;
 import com.adamcalculator.dynamicpack.sync.SyncProgress;
@@ -46,6 +47,7 @@ public class GameStartSyncing extends Thread {
         Out.debug("[GameStartSyncing] thread started");
 
         SyncingTask.launchTaskAsSyncing(() -> {
+            SyncingTask.launchSyncing = true;
             try {
                 StatusChecker.check(); // <-- don't forget check a status
                 SyncingTask.currentRootSyncBuilder = syncBuilder = SyncingTask.rootSyncBuilder();
@@ -61,9 +63,13 @@ public class GameStartSyncing extends Thread {
             } catch (Exception e) {
                 Out.error("Error while GameStartSyncing...", e);
             }
+            SyncingTask.launchSyncing = false;
             unlock(); // <--- Unlock main thread!
             SyncingTask.currentRootSyncBuilder = null;
         });
+
+        // files trusted at launch (and left from previous sessions)
+        IntegrityScrubber.launch();
     }
 
     private SyncProgress createSyncProgress() {
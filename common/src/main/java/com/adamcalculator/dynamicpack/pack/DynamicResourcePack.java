@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
 
 public class DynamicResourcePack extends AbstractPack {
@@ -29,6 +30,10 @@ public class DynamicResourcePack extends AbstractPack {
     private boolean isSyncing = false; // currently syncing
     private boolean destroyed = false; // destroyed
     private SyncBuilder activeSyncBuilder;
+    private PackFileSystemSession syncFileSystemSession; // shared between init, update and validate
+    private final Semaphore fileSystemLock = new Semaphore(1); // see getFileSystemLock()
+    private final Object fileSystemLockAcquire = new Object(); // not this: waits for IntegrityScrubber
+    private volatile boolean syncHoldsFileSystemLock;
 
 
     public DynamicResourcePack(File location, JsonObject json) {
@@ -69,6 +74,7 @@ public class DynamicResourcePack extends AbstractPack {
                     isSyncing = false;
                     setLatestException(e);
                     notUpdate = true;
+                    closeSyncFileSystem();
                     error("Error while doUpdate (or init) SyncBuilder", e);
                 }
                 return def;
@@ -82,6 +88,9 @@ public class DynamicResourcePack extends AbstractPack {
                     checkNetwork();
                     builder = remote.syncBuilder();
                     builder.init(ignoreCaches);
+                    if (!builder.isUpdateAvailable()) {
+                        closeSyncFileSystem();
+                    }
                 });
                 isSyncing = false;
                 activeSyncBuilder = null;
@@ -124,12 +133,17 @@ public class DynamicResourcePack extends AbstractPack {
                     boolean b = builder.doUpdate(progress);
                     try {
                         validateSafePackMinecraftMeta();
-                        setLatestException(null);
+                        int failed = builder.getFailedFilesCount();
+                        setLatestException(failed == 0 ? null : new TranslatableException("Partial sync: " + failed + " files not synced",
+                                "dynamicpack.exceptions.pack.partial_sync", failed));
 
                     } catch (Exception e2) {
                         error("Error while check safe pack meta", e2);
                         setLatestException(e2);
                     }
+                    if (closeSyncFileSystem()) {
+                        builder.onSyncFileSystemClosed();
+                    }
                     isSyncing = false;
                     activeSyncBuilder = null;
 
@@ -137,6 +151,14 @@ public class DynamicResourcePack extends AbstractPack {
                 }, false);
             }
 
+            @Override
+            public int getFailedFilesCount() {
+                if (notUpdate) {
+                    return 0;
+                }
+                return builder.getFailedFilesCount();
+            }
+
             @Override
             public void interrupt() {
                 builder.interrupt();
@@ -144,11 +166,88 @@ public class DynamicResourcePack extends AbstractPack {
         };
     }
 
+    /**
+     * Pack filesystem shared for the whole sync lifecycle (init, update, validate).
+     * Mounted on first call; closed by closeSyncFileSystem()
+     */
+    public Path getSyncFileSystem() throws IOException {
+        synchronized (fileSystemLockAcquire) {
+            if (!syncHoldsFileSystemLock) {
+                // waits for IntegrityScrubber to finish current file
+                fileSystemLock.acquireUninterruptibly();
+                syncHoldsFileSystemLock = true;
+            }
+        }
+
+        synchronized (this) {
+            if (syncFileSystemSession == null || syncFileSystemSession.isClosed()) {
+                debug("Mounting pack filesystem for sync");
+                try {
+                    syncFileSystemSession = PackFileSystemSession.open(location, LockUtils.createFileFinalizer(location));
+
+                } catch (IOException | RuntimeException e) {
+                    releaseSyncFileSystemLock();
+                    throw e;
+                }
+            }
+            return syncFileSystemSession.getRoot();
+        }
+    }
+
+    /**
+     * Held while pack filesystem mounted: by sync from mount to closeSyncFileSystem(),
+     * by IntegrityScrubber while it reads files. Not bound to thread (sync phases may run on different threads)
+     */
+    public Semaphore getFileSystemLock() {
+        return fileSystemLock;
+    }
+
+    private void releaseSyncFileSystemLock() {
+        synchronized (fileSystemLockAcquire) {
+            if (syncHoldsFileSystemLock) {
+                syncHoldsFileSystemLock = false;
+                fileSystemLock.release();
+            }
+        }
+    }
+
+    /**
+     * Close shared sync filesystem if opened. Safe to call many times
+     * @return false if close failed (changes of .zip may be not persisted)
+     */
+    public synchronized boolean closeSyncFileSystem() {
+        if (syncFileSystemSession == null) {
+            releaseSyncFileSystemLock();
+            return true;
+        }
+
+        boolean closed = true;
+        try {
+            syncFileSystemSession.close();
+            debug("Pack filesystem for sync closed");
+
+        } catch (Exception e) {
+            error("Failed to close pack filesystem", e);
+            closed = false;
+        }
+        syncFileSystemSession = null;
+        releaseSyncFileSystemLock();
+        return closed;
+    }
+
+    private synchronized boolean isSyncFileSystemOpened() {
+        return syncFileSystemSession != null && !syncFileSystemSession.isClosed();
+    }
+
     /**
      * Don't run inside PackUtil.openPackFileSystem()!!! use method with argument
      */
     public void saveClientFile() {
         try {
+            if (isSyncFileSystemOpened()) {
+                saveClientFile(getSyncFileSystem());
+                return;
+            }
             PackUtil.openPackFileSystem(getLocation(), LockUtils.createFileFinalizer(getLocation()), this::saveClientFile);
 
         } catch (Exception e) {
@@ -248,20 +347,18 @@ public class DynamicResourcePack extends AbstractPack {
     }
 
     private void validateSafePackMinecraftMeta() throws Exception {
-        PackUtil.openPackFileSystem(location, path -> {
-            Path mcmeta = path.resolve(SharedConstrains.MINECRAFT_META);
-            boolean safe = PathsUtil.isPathFileExists(mcmeta);
-            if (safe) {
-                try {
-                    safe = checkMinecraftMetaIsValid(PathsUtil.readString(mcmeta));
-                } catch (IOException ignored) {
-                    safe = false;
-                }
-            }
-            if (!safe) {
-                PathsUtil.nioWriteText(mcmeta, SharedConstrains.UNKNOWN_PACK_MCMETA);
+        Path mcmeta = getSyncFileSystem().resolve(SharedConstrains.MINECRAFT_META);
+        boolean safe = PathsUtil.isPathFileExists(mcmeta);
+        if (safe) {
+            try {
+                safe = checkMinecraftMetaIsValid(PathsUtil.readString(mcmeta));
+            } catch (IOException ignored) {
+                safe = false;
             }
-        });
+        }
+        if (!safe) {
+            PathsUtil.nioWriteText(mcmeta, SharedConstrains.UNKNOWN_PACK_MCMETA);
+        }
     }
 
     private boolean checkMinecraftMetaIsValid(String s) {
@@ -1,6 +1,7 @@
 package com.adamcalculator.dynamicpack.pack;
 
 import com.adamcalculator.dynamicpack.DynamicPackMod;
+import com.adamcalculator.dynamicpack.InputValidator;
 import com.adamcalculator.dynamicpack.SharedConstrains;
 import com.adamcalculator.dynamicpack.sync.SyncBuilder;
 import com.adamcalculator.dynamicpack.sync.SyncProgress;
@@ -11,8 +12,12 @@ import com.google.gson.JsonObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Remote for remote.type = "modrinth"
@@ -98,33 +103,44 @@ public class ModrinthRemote extends Remote {
                     return false;
                 }
 
+                if (!InputValidator.isHashValid(latest.fileHash)) {
+                    throw new SecurityException("Not valid hash of modrinth file: " + latest.fileHash);
+                }
+
                 progress.setPhase("Downloading resourcepack from modrinth");
                 String[] urlSplit = latest.url.split("/");
                 String fileName = urlSplit[urlSplit.length - 1];
-                File tempFile = null;
+                // stable name: partial download resumed by next attempt or launch
+                File tempFile = new File(System.getProperty("java.io.tmpdir") + File.separator + SharedConstrains.TEMP_DIR_NAME, "modrinth_" + latest.fileHash + ".zip");
+                PathsUtil.createDirsToFile(tempFile.toPath());
+                deleteStaleDownloads(tempFile.toPath());
+                Exception lastException = null;
                 int attempts = SharedConstrains.MAX_ATTEMPTS_TO_DOWNLOAD_FILE;
                 while (attempts > 0) {
-                    tempFile = Urls.downloadFileToTemp(latest.url, "dynamicpack_modrinth", ".zip", SharedConstrains.MODRINTH_HTTPS_FILE_SIZE_LIMIT, urlsController = new UrlsController() {
-                        @Override
-                        public void onUpdate(UrlsController it) {
-                            float percentage = it.getPercentage();
-                            progress.downloading(fileName, percentage);
-                            downloaded = getLatest();
+                    try {
+                        boolean success = Urls.downloadFileResumable(latest.url, tempFile.toPath(), latest.fileHash, SharedConstrains.MODRINTH_HTTPS_FILE_SIZE_LIMIT, urlsController = new UrlsController() {
+                            @Override
+                            public void onUpdate(UrlsController it) {
+                                float percentage = it.getPercentage();
+                                progress.downloading(fileName, percentage);
+                                downloaded = getLatest();
+                            }
+                        });
+                        if (!success) {
+                            return false;
                         }
-                    });
-                    if (urlsController.isInterrupted()) {
-                        return false;
-                    }
-
-                    if (Hashes.sha1sum(tempFile).equals(latest.fileHash)) {
                         break;
+
+                    } catch (IOException | SecurityException e) {
+                        Out.error("Failed to download from modrinth. Attempt=" + (SharedConstrains.MAX_ATTEMPTS_TO_DOWNLOAD_FILE - attempts + 1), e);
+                        lastException = e;
                     }
                     progress.setPhase("Failed. Downloading again...");
                     attempts--;
                 }
                 if (attempts == 0) {
                     progress.setPhase("Fatal error.");
-                    throw new RuntimeException("Failed to download correct file from modrinth.");
+                    throw new RuntimeException("Failed to download correct file from modrinth.", lastException);
                 }
 
                 progress.setPhase("Updating metadata...");
@@ -233,6 +249,31 @@ public class ModrinthRemote extends Remote {
         return !getCurrentUnique().equals(id);
     }
 
+    // downloads of older versions (and .part files of them or of older mod versions) never resumed
+    private void deleteStaleDownloads(Path current) {
+        String currentName = current.getFileName().toString();
+        deleteStaleDownloads(current.getParent(), currentName::equals);
+        deleteStaleDownloads(PartialDownload.getPartsDir(current.getParent()), name -> name.startsWith(currentName));
+    }
+
+    private void deleteStaleDownloads(Path dir, Predicate<String> keep) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("modrinth_") && !keep.test(name) && Files.isRegularFile(file)) {
+                    debug("Delete stale download " + name);
+                    Files.deleteIfExists(file);
+                }
+            }
+
+        } catch (IOException e) {
+            Out.error("Failed to delete stale modrinth downloads in " + dir, e);
+        }
+    }
+
 
     /**
      * Data-object for version in Modrinth API. Uses only for latest version.
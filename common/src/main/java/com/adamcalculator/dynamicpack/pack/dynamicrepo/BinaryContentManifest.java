@@ -0,0 +1,196 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.adamcalculator.dynamicpack.util.Hashes;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary alternative of content.json. Published by repo next to json:
+ * "url_binary" and "hash_binary" in dynamicmcpack.repo.json["contents"][*].
+ * <pre>
+ * int    magic "DPCM"
+ * int    version (1)
+ * int    filesCount
+ * int    length + utf-8 parent
+ * int    length + utf-8 remote_parent
+ * table  filesCount * {int pathOffset, int pathLength, byte[20] sha1, long size (-1 if unknown)} sorted by path
+ * bytes  utf-8 paths (offsets relative to start of this block)
+ * </pre>
+ * Big-endian. Entries read from buffer on access, no objects per file while parsing.
+ * <p>Lists all files of content: "directories" and "shards" supported only by json</p>
+ */
+public class BinaryContentManifest {
+    public static final int MAGIC = 0x4450434D; // DPCM
+    public static final int VERSION = 1;
+    private static final int HASH_SIZE = 20;
+    private static final int ENTRY_SIZE = 4 + 4 + HASH_SIZE + 8;
+
+    /**
+     * Read whole stream (limited by caller) and parse it. Stream closed after read
+     * @throws SecurityException if hash of bytes not equal expectedHash
+     */
+    public static ContentManifest read(InputStream inputStream, String expectedHash, String source) throws IOException {
+        byte[] bytes;
+        try (inputStream) {
+            bytes = inputStream.readAllBytes();
+        }
+        return read(ByteBuffer.wrap(bytes), expectedHash, source);
+    }
+
+    /**
+     * Verify sha1 of buffer and parse it. Buffer not copied
+     * @throws SecurityException if hash of buffer not equal expectedHash
+     */
+    public static ContentManifest read(ByteBuffer buffer, String expectedHash, String source) throws IOException {
+        // by chunks: one huge update() is much slower on some JVMs
+        MessageDigest digest = Hashes.newSha1Digest();
+        ByteBuffer data = buffer.duplicate();
+        byte[] chunk = new byte[Math.min(data.remaining(), 64 * 1024)];
+        while (data.hasRemaining()) {
+            int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            digest.update(chunk, 0, length);
+        }
+        String receivedHash = Hashes.hex(digest.digest());
+        if (!expectedHash.equals(receivedHash)) {
+            throw new SecurityException("Hash of binary content at " + source + " not verified. remote: " + expectedHash + "; received: " + receivedHash);
+        }
+        return parse(buffer, source);
+    }
+
+    /**
+     * Parse already verified buffer. Buffer not copied
+     */
+    private static ContentManifest parse(ByteBuffer buffer, String source) throws IOException {
+        try {
+            ByteBuffer buf = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("Not a binary content manifest: " + source);
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Incompatible binary manifest version " + version + ": " + source);
+            }
+
+            int count = buf.getInt();
+            String parent = readString(buf);
+            String remoteParent = readString(buf);
+            if (count < 0 || (long) count * ENTRY_SIZE > buf.remaining()) {
+                throw new IOException("Binary manifest truncated: " + source);
+            }
+
+            int tableOffset = buf.position();
+            int stringsOffset = tableOffset + count * ENTRY_SIZE;
+            int stringsLength = buf.limit() - stringsOffset;
+
+            // validate all offsets once; access later without checks
+            for (int i = 0; i < count; i++) {
+                int entry = tableOffset + i * ENTRY_SIZE;
+                long offset = buf.getInt(entry);
+                long length = buf.getInt(entry + 4);
+                if (offset < 0 || length <= 0 || offset + length > stringsLength) {
+                    throw new IOException("Binary manifest entry " + i + " out of bounds: " + source);
+                }
+            }
+
+            return ContentManifest.ofFiles(1, parent, remoteParent, new EntryTable(buf, tableOffset, stringsOffset, count));
+
+        } catch (RuntimeException e) {
+            throw new IOException("Binary manifest corrupted: " + source, e);
+        }
+    }
+
+    /**
+     * Write binary manifest (for repo tools and tests)
+     */
+    public static void write(OutputStream outputStream, String parent, String remoteParent, List<ContentManifest.FileEntry> files) throws IOException {
+        List<byte[]> paths = new ArrayList<>(files.size());
+        List<ContentManifest.FileEntry> sorted = new ArrayList<>(files);
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.getName().getBytes(StandardCharsets.UTF_8), b.getName().getBytes(StandardCharsets.UTF_8)));
+
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sorted.size());
+        writeString(out, parent);
+        writeString(out, remoteParent);
+
+        int offset = 0;
+        for (ContentManifest.FileEntry file : sorted) {
+            byte[] path = file.getName().getBytes(StandardCharsets.UTF_8);
+            paths.add(path);
+            out.writeInt(offset);
+            out.writeInt(path.length);
+            out.write(Hashes.unhex(file.getHash()));
+            out.writeLong(file.getSize() < 0 ? ContentManifest.FileEntry.UNKNOWN_SIZE : file.getSize());
+            offset += path.length;
+        }
+        for (byte[] path : paths) {
+            out.write(path);
+        }
+        out.flush();
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * List view over entries table. FileEntry created on every get()
+     */
+    private static class EntryTable extends AbstractList<ContentManifest.FileEntry> {
+        private final ByteBuffer buf;
+        private final int tableOffset;
+        private final int stringsOffset;
+        private final int count;
+
+        private EntryTable(ByteBuffer buf, int tableOffset, int stringsOffset, int count) {
+            this.buf = buf;
+            this.tableOffset = tableOffset;
+            this.stringsOffset = stringsOffset;
+            this.count = count;
+        }
+
+        @Override
+        public ContentManifest.FileEntry get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int entry = tableOffset + index * ENTRY_SIZE;
+
+            byte[] path = new byte[buf.getInt(entry + 4)];
+            buf.get(stringsOffset + buf.getInt(entry), path);
+
+            byte[] hash = new byte[HASH_SIZE];
+            buf.get(entry + 8, hash);
+
+            long size = buf.getLong(entry + 8 + HASH_SIZE);
+            return new ContentManifest.FileEntry(new String(path, StandardCharsets.UTF_8), Hashes.hex(hash), size < 0 ? ContentManifest.FileEntry.UNKNOWN_SIZE : size);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Parsed content.json of dynamic_repo without a json-tree.
+ * <pre>
+ * {
+ *   "formatVersion": 1,
+ *   "content": {
+ *     "parent": "assets",
+ *     "remote_parent": "",
+ *     "directories": {
+ *       "minecraft/textures/block": "*digest*"
+ *     },
+ *     "files": {
+ *       "minecraft/lang/en_us.json": {"hash": "*sha1*", "size": 1234, "crc32": 3735928559}
+ *     },
+ *     "shards": [
+ *       {"url": "shards/textures.json", "url_compressed": "shards/textures.json.gz", "hash": "*sha1*"}
+ *     ],
+ *     "bundles": [
+ *       {"url": "bundles/block.zip", "hash": "*sha1*", "size": 123456, "directory": "minecraft/textures/block"}
+ *     ]
+ *   }
+ * }
+ * </pre>
+ * Optional "directories" are Merkle digests of subtrees (relative to parent): any value, changed
+ * when any file inside changed (e.g. sha1 of sorted "path:hash" lines). Files of unchanged directories
+ * skipped while parsing if "directories" placed before "files".
+ * <p>Optional "crc32" of file (unsigned) compared with zip central directory of .zip packs instead of sha1 of local file</p>
+ * <p>Optional "shards" are content.json files with the rest of files of content; parent and remote_parent of shard
+ * inherited from this manifest</p>
+ * <p>Optional "bundles" are .zip archives (url relative to repo) of files of content: member names are keys of files.
+ * "directory" (relative to parent) limits bundle to files inside it; without it bundle is of whole content</p>
+ */
+public class ContentManifest {
+    @Nullable private final DirectoryFilter filter;
+    private long formatVersion = -1;
+    private String parent = "";
+    private boolean parentRead;
+    private String remoteParent = "";
+    private final Map<String, String> directories = new LinkedHashMap<>();
+    private final Set<String> skippedDirectories = new HashSet<>();
+    private boolean directoriesResolved;
+    private int skippedFiles;
+    private List<FileEntry> files = new ArrayList<>();
+    private final List<ShardRef> shards = new ArrayList<>();
+    private final List<BundleRef> bundles = new ArrayList<>();
+
+    private ContentManifest(@Nullable DirectoryFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Read content.json from stream with streaming hash calculation.
+     * <p>Stream closed after read</p>
+     * @param inputStream raw (uncompressed) content.json
+     * @param expectedHash sha1 of content.json from dynamicmcpack.repo.json
+     * @param source for exception messages
+     * @throws SecurityException if hash of read bytes not equal expectedHash
+     */
+    public static ContentManifest read(InputStream inputStream, String expectedHash, String source) throws IOException {
+        return read(inputStream, expectedHash, source, null);
+    }
+
+    /**
+     * @param filter files of directories accepted by filter not listed in getFiles()
+     */
+    public static ContentManifest read(InputStream inputStream, String expectedHash, String source, @Nullable DirectoryFilter filter) throws IOException {
+        ContentManifest manifest = new ContentManifest(filter);
+        readVerified(inputStream, expectedHash, source, manifest::readRoot);
+        return manifest;
+    }
+
+    /**
+     * Manifest from other format (see BinaryContentManifest)
+     */
+    static ContentManifest ofFiles(long formatVersion, String parent, String remoteParent, List<FileEntry> files) {
+        ContentManifest manifest = new ContentManifest(null);
+        manifest.formatVersion = formatVersion;
+        manifest.parent = parent;
+        manifest.remoteParent = remoteParent;
+        manifest.files = files;
+        return manifest;
+    }
+
+    /**
+     * Stream json to body reader and verify sha1 of all bytes of stream. Stream closed after read
+     * @throws SecurityException if hash of read bytes not equal expectedHash
+     */
+    static void readVerified(InputStream inputStream, String expectedHash, String source, JsonBodyReader body) throws IOException {
+        DigestInputStream digestStream = new DigestInputStream(inputStream, Hashes.newSha1Digest());
+        try (JsonReader reader = new JsonReader(new InputStreamReader(digestStream, StandardCharsets.UTF_8))) {
+            body.read(reader);
+
+            // trailing whitespaces also hashed
+            byte[] buffer = new byte[256];
+            //noinspection StatementWithEmptyBody
+            while (digestStream.read(buffer) != -1) {
+            }
+        }
+
+        String receivedHash = Hashes.hex(digestStream.getMessageDigest().digest());
+        if (!expectedHash.equals(receivedHash)) {
+            throw new SecurityException("Hash of content at " + source + " not verified. remote: " + expectedHash + "; received: " + receivedHash);
+        }
+    }
+
+    private void readRoot(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "formatVersion" -> formatVersion = reader.nextLong();
+                case "content" -> readContent(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readContent(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "parent" -> {
+                    parent = reader.nextString();
+                    parentRead = true;
+                }
+                case "remote_parent" -> remoteParent = reader.nextString();
+                case "directories" -> {
+                    readDirectories(reader);
+                    if (parentRead) {
+                        resolveSkippedDirectories();
+                    }
+                }
+                case "files" -> skippedFiles += readFiles(reader, files, directoriesResolved && !skippedDirectories.isEmpty() ? this::isSkipped : null);
+                case "shards" -> readShards(reader);
+                case "bundles" -> readBundles(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // "directories" after "files" or before "parent" in stream
+        if (!directoriesResolved) {
+            resolveSkippedDirectories();
+            if (!skippedDirectories.isEmpty()) {
+                int before = files.size();
+                files.removeIf(entry -> isSkipped(entry.getName()));
+                skippedFiles += before - files.size();
+            }
+        }
+    }
+
+    private void readDirectories(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String dir = reader.nextName();
+            directories.put(dir, reader.nextString());
+        }
+        reader.endObject();
+    }
+
+    private void readShards(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String url = null;
+            String urlCompressed = null;
+            String hash = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "url" -> url = reader.nextString();
+                    case "url_compressed" -> urlCompressed = reader.peek() == JsonToken.NULL ? nextNull(reader) : reader.nextString();
+                    case "hash" -> hash = reader.nextString();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (url == null || hash == null) {
+                throw new IOException("Shard of content without url or hash");
+            }
+            shards.add(new ShardRef(url, urlCompressed, hash));
+        }
+        reader.endArray();
+    }
+
+    private void readBundles(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String url = null;
+            String hash = null;
+            long size = FileEntry.UNKNOWN_SIZE;
+            String directory = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "url" -> url = reader.nextString();
+                    case "hash" -> hash = reader.nextString();
+                    case "size" -> size = reader.nextLong();
+                    case "directory" -> directory = reader.peek() == JsonToken.NULL ? nextNull(reader) : reader.nextString();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (url == null || hash == null) {
+                throw new IOException("Bundle of content without url or hash");
+            }
+            bundles.add(new BundleRef(url, hash, size, directory));
+        }
+        reader.endArray();
+    }
+
+    private void resolveSkippedDirectories() {
+        directoriesResolved = true;
+        if (filter == null) {
+            return;
+        }
+        for (Map.Entry<String, String> e : directories.entrySet()) {
+            if (filter.isUnchanged(parent, e.getKey(), e.getValue())) {
+                skippedDirectories.add(e.getKey());
+            }
+        }
+    }
+
+    // file inside any skipped directory
+    private boolean isSkipped(String name) {
+        int i = name.lastIndexOf('/');
+        while (i > 0) {
+            if (skippedDirectories.contains(name.substring(0, i))) {
+                return true;
+            }
+            i = name.lastIndexOf('/', i - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Read {"path": {"hash": "*sha1*", "size": 1234}, ...} object
+     */
+    static int readFiles(JsonReader reader, List<FileEntry> files, @Nullable Predicate<String> skip) throws IOException {
+        int skipped = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (skip != null && skip.test(name)) {
+                reader.skipValue();
+                skipped++;
+                continue;
+            }
+            String hash = null;
+            long size = FileEntry.UNKNOWN_SIZE;
+            long crc32 = FileEntry.UNKNOWN_CRC;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "hash" -> hash = reader.peek() == JsonToken.NULL ? nextNull(reader) : reader.nextString();
+                    case "size" -> size = reader.nextLong();
+                    case "crc32" -> crc32 = reader.nextLong();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            files.add(new FileEntry(name, hash, size, crc32));
+        }
+        reader.endObject();
+        return skipped;
+    }
+
+    static String nextNull(JsonReader reader) throws IOException {
+        reader.nextNull();
+        return null;
+    }
+
+    public long getFormatVersion() {
+        return formatVersion;
+    }
+
+    public String getParent() {
+        return parent;
+    }
+
+    public String getRemoteParent() {
+        return remoteParent;
+    }
+
+    /**
+     * Merkle digests of directories relative to parent. Empty if not supported by remote
+     */
+    public Map<String, String> getDirectories() {
+        return directories;
+    }
+
+    /**
+     * Directories accepted by DirectoryFilter; files of them not listed
+     */
+    public Set<String> getSkippedDirectories() {
+        return skippedDirectories;
+    }
+
+    public int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * Files in order of content.json (except files of skipped directories)
+     */
+    public List<FileEntry> getFiles() {
+        return files;
+    }
+
+    /**
+     * Shards of content. Empty if content not sharded
+     */
+    public List<ShardRef> getShards() {
+        return shards;
+    }
+
+    public List<BundleRef> getBundles() {
+        return bundles;
+    }
+
+    @FunctionalInterface
+    public interface DirectoryFilter {
+        /**
+         * @param parent content.parent
+         * @param directory directory relative to parent
+         * @param digest remote digest of directory
+         * @return true if directory not changed since last sync and its files can be skipped
+         */
+        boolean isUnchanged(String parent, String directory, String digest);
+    }
+
+    @FunctionalInterface
+    interface JsonBodyReader {
+        void read(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Entry of content.files
+     */
+    public static class FileEntry {
+        public static final long UNKNOWN_SIZE = -1;
+        public static final long UNKNOWN_CRC = -1;
+
+        private final String name;
+        private final String hash;
+        private final long size;
+        private final long crc32;
+
+        public FileEntry(String name, String hash, long size) {
+            this(name, hash, size, UNKNOWN_CRC);
+        }
+
+        public FileEntry(String name, String hash, long size, long crc32) {
+            this.name = name;
+            this.hash = hash;
+            this.size = size;
+            this.crc32 = crc32 < 0 || crc32 > 0xFFFFFFFFL ? UNKNOWN_CRC : crc32;
+        }
+
+        /**
+         * Key in content.files (path relative to content parent)
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * size from remote! UNKNOWN_SIZE if not listed (deprecated remote)
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Unsigned crc32 of file or UNKNOWN_CRC if not listed
+         */
+        public long getCrc32() {
+            return crc32;
+        }
+    }
+
+    /**
+     * Entry of content.shards
+     */
+    public static class ShardRef {
+        private final String url;
+        private final String urlCompressed;
+        private final String hash;
+
+        public ShardRef(String url, @Nullable String urlCompressed, String hash) {
+            this.url = url;
+            this.urlCompressed = urlCompressed;
+            this.hash = hash;
+        }
+
+        /**
+         * Relative to repo url
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        @Nullable
+        public String getUrlCompressed() {
+            return urlCompressed;
+        }
+
+        /**
+         * sha1 of shard (uncompressed)
+         */
+        public String getHash() {
+            return hash;
+        }
+    }
+
+    /**
+     * Entry of content.bundles
+     */
+    public static class BundleRef {
+        private final String url;
+        private final String hash;
+        private final long size;
+        private final String directory;
+
+        public BundleRef(String url, String hash, long size, @Nullable String directory) {
+            this.url = url;
+            this.hash = hash;
+            this.size = size;
+            this.directory = directory;
+        }
+
+        /**
+         * Relative to repo url
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * sha1 of .zip
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * Size of .zip or UNKNOWN_SIZE
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Directory of bundled files relative to content parent; null if bundle of whole content
+         */
+        @Nullable
+        public String getDirectory() {
+            return directory;
+        }
+    }
+}
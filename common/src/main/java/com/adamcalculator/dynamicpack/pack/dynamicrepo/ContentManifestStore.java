@@ -0,0 +1,229 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.adamcalculator.dynamicpack.util.Out;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Hash-addressed store of already verified content.json files.
+ * <p>Content with not changed hash resolved without network. Least recently used removed when total size exceeds a limit</p>
+ * <pre>
+ * config/dynamicpack/manifests/{sha1}.json
+ * config/dynamicpack/manifests/{sha1}.bin
+ * </pre>
+ */
+public class ContentManifestStore {
+    private final Path dir;
+    private final long limit;
+
+    public ContentManifestStore(Path dir, long limit) {
+        this.dir = dir;
+        this.limit = limit;
+    }
+
+    /**
+     * @return verified manifest from store or null if not stored (or stored file corrupted)
+     */
+    @Nullable
+    public ContentManifest read(String hash, @Nullable ContentManifest.DirectoryFilter filter) {
+        if (!isStorable(hash)) {
+            return null;
+        }
+
+        Path file = fileOf(hash);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            ContentManifest manifest = ContentManifest.read(Files.newInputStream(file), hash, file.toString(), filter);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return manifest;
+
+        } catch (Exception e) {
+            Out.error("[ContentManifestStore] Stored manifest " + file + " corrupted. Deleting...", e);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Binary manifest from store. Read to heap: mapped file can't be deleted on Windows while mapping alive
+     * @return verified manifest or null if not stored (or stored file corrupted)
+     */
+    @Nullable
+    public ContentManifest readBinary(String hash) {
+        if (!isStorable(hash)) {
+            return null;
+        }
+
+        Path file = binaryFileOf(hash);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            ContentManifest manifest = BinaryContentManifest.read(ByteBuffer.wrap(Files.readAllBytes(file)), hash, file.toString());
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return manifest;
+
+        } catch (Exception e) {
+            Out.error("[ContentManifestStore] Stored binary manifest " + file + " corrupted. Deleting...", e);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Read binary manifest from network stream and store copy of it if hash verified
+     * @param inputStream limited by caller; closed after read
+     */
+    public ContentManifest readAndStoreBinary(InputStream inputStream, String hash, String source) throws IOException {
+        byte[] bytes;
+        try (inputStream) {
+            bytes = inputStream.readAllBytes();
+        }
+        ContentManifest manifest = BinaryContentManifest.read(ByteBuffer.wrap(bytes), hash, source);
+        if (!isStorable(hash)) {
+            return manifest;
+        }
+
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, hash, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, binaryFileOf(hash), StandardCopyOption.REPLACE_EXISTING);
+            prune();
+
+        } catch (Exception e) {
+            Out.error("[ContentManifestStore] Failed to store binary " + hash, e);
+        }
+        return manifest;
+    }
+
+    /**
+     * Read manifest from network stream and store copy of it if hash verified
+     * @param inputStream raw (uncompressed) content.json; closed after read
+     */
+    public ContentManifest readAndStore(InputStream inputStream, String hash, String source, @Nullable ContentManifest.DirectoryFilter filter) throws IOException {
+        if (!isStorable(hash)) {
+            return ContentManifest.read(inputStream, hash, source, filter);
+        }
+
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, hash, ".tmp");
+        ContentManifest manifest;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            manifest = ContentManifest.read(new TeeInputStream(inputStream, out), hash, source, filter);
+
+        } catch (Exception e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, fileOf(hash), StandardCopyOption.REPLACE_EXISTING);
+            prune();
+
+        } catch (Exception e) {
+            Out.error("[ContentManifestStore] Failed to store " + hash, e);
+            Files.deleteIfExists(temp);
+        }
+        return manifest;
+    }
+
+    // hash used as file name: only lowercase hex
+    private static boolean isStorable(String hash) {
+        return hash != null && hash.length() == 40 && hash.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+    }
+
+    private Path fileOf(String hash) {
+        return dir.resolve(hash + ".json");
+    }
+
+    private Path binaryFileOf(String hash) {
+        return dir.resolve(hash + ".bin");
+    }
+
+    // delete least recently used while size > limit
+    private synchronized void prune() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = new ArrayList<>(stream.filter(path -> path.getFileName().toString().endsWith(".json") || path.getFileName().toString().endsWith(".bin")).toList());
+        }
+
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        if (total <= limit) {
+            return;
+        }
+
+        files.sort(Comparator.comparingLong(path -> {
+            try {
+                return Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                return 0L;
+            }
+        }));
+        for (Path file : files) {
+            if (total <= limit) {
+                break;
+            }
+            long size = Files.size(file);
+            Files.deleteIfExists(file);
+            total -= size;
+            Out.debug("[ContentManifestStore] pruned " + file.getFileName());
+        }
+    }
+
+    /**
+     * Copy all read bytes to out
+     */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream out;
+
+        private TeeInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                out.write(b, off, read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed delta of dynamic_repo between two builds (repo formatVersion 2).
+ * <pre>
+ * {
+ *   "formatVersion": 2,
+ *   "from": 10,
+ *   "to": 12,
+ *   "contents": {
+ *     "*content_id*": {
+ *       "parent": "assets",
+ *       "remote_parent": "",
+ *       "changed": {
+ *         "minecraft/lang/en_us.json": {"hash": "*sha1*", "size": 1234}
+ *       },
+ *       "deleted": ["minecraft/lang/old.json"]
+ *     }
+ *   }
+ * }
+ * </pre>
+ * Listed in dynamicmcpack.repo.json: "deltas": [{"from": 10, "to": 12, "url": "deltas/10-12.json", "hash": "*sha1*"}]
+ */
+public class DeltaManifest {
+    private long formatVersion = -1;
+    private long from = -1;
+    private long to = -1;
+    private final Map<String, ContentDelta> contents = new LinkedHashMap<>();
+
+    /**
+     * Read delta from stream with streaming hash calculation. Stream closed after read
+     * @throws SecurityException if hash of read bytes not equal expectedHash
+     */
+    public static DeltaManifest read(InputStream inputStream, String expectedHash, String source) throws IOException {
+        DeltaManifest delta = new DeltaManifest();
+        ContentManifest.readVerified(inputStream, expectedHash, source, delta::readRoot);
+        return delta;
+    }
+
+    private void readRoot(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "formatVersion" -> formatVersion = reader.nextLong();
+                case "from" -> from = reader.nextLong();
+                case "to" -> to = reader.nextLong();
+                case "contents" -> readContents(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readContents(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String id = reader.nextName();
+            ContentDelta content = new ContentDelta();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "parent" -> content.parent = reader.nextString();
+                    case "remote_parent" -> content.remoteParent = reader.nextString();
+                    case "changed" -> ContentManifest.readFiles(reader, content.changed, null);
+                    case "deleted" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            content.deleted.add(reader.nextString());
+                        }
+                        reader.endArray();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            contents.put(id, content);
+        }
+        reader.endObject();
+    }
+
+    public long getFormatVersion() {
+        return formatVersion;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * Changes by content id. Contents without changes may be absent
+     */
+    public Map<String, ContentDelta> getContents() {
+        return contents;
+    }
+
+    /**
+     * Changes of one content
+     */
+    public static class ContentDelta {
+        private String parent = "";
+        private String remoteParent = "";
+        private final List<ContentManifest.FileEntry> changed = new ArrayList<>();
+        private final List<String> deleted = new ArrayList<>();
+
+        public String getParent() {
+            return parent;
+        }
+
+        public String getRemoteParent() {
+            return remoteParent;
+        }
+
+        /**
+         * Added or changed files
+         */
+        public List<ContentManifest.FileEntry> getChanged() {
+            return changed;
+        }
+
+        /**
+         * Paths (relative to parent) of deleted files
+         */
+        public List<String> getDeleted() {
+            return deleted;
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package com.adamcalculator.dynamicpack.pack.dynamicrepo;
 
+import com.adamcalculator.dynamicpack.util.Hashes;
 import com.google.common.base.MoreObjects;
 
 import java.nio.file.Path;
 
+/**
+ * File to download. Compact: url stored as shared base + path, hash as bytes
+ */
 public class DynamicFile {
-    private final String url;
+    private final String urlBase; // shared between files of content
     private final String path;
-    private final int size; // size from remote! May a Integer.MAX_VALUE if remote deprecated!
-    private final String hash;
+    private volatile long size; // size from remote! -1 if unknown (deprecated remote)
+    private final byte[] hash;
     private Path downloadedPath;
 
-    public DynamicFile(String url, String path, int size, String hash) {
-        this.url = url;
+    /**
+     * @param urlBase url of remote parent with trailing '/'. Full url is urlBase + path
+     */
+    public DynamicFile(String urlBase, String path, long size, String hash) {
+        this.urlBase = urlBase;
         this.path = path;
         this.size = size;
-        this.hash = hash;
+        this.hash = Hashes.unhex(hash);
     }
 
     public void setDownloadPath(Path downloadedPath) {
@@ -26,8 +33,12 @@ public class DynamicFile {
         return downloadedPath;
     }
 
+    public String getUrlBase() {
+        return urlBase;
+    }
+
     public String getUrl() {
-        return url;
+        return urlBase + path;
     }
 
     public String getPath() {
@@ -35,23 +46,33 @@ public class DynamicFile {
     }
 
     /**
-     * size from remote! May a Integer.MAX_VALUE if remote deprecated!
+     * size from remote! -1 if unknown (deprecated remote)
      */
-    public int getSize() {
+    public long getSize() {
         return size;
     }
 
+    /**
+     * Size discovered by request (Content-Length) if not listed in manifest
+     */
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Lower-case hex sha1
+     */
     public String getHash() {
-        return hash;
+        return Hashes.hex(hash);
     }
 
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
-                .add("url", url)
+                .add("url", getUrl())
                 .add("path", path)
                 .add("size", size)
-                .add("hash", hash)
+                .add("hash", getHash())
                 .add("tempPath", downloadedPath)
                 .toString();
     }
@@ -9,6 +9,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -164,6 +165,25 @@ public class DynamicRepoPreferences {
         return def;
     }
 
+    /**
+     * Contents of repo at latest sync (known_contents) in format of dynamicmcpack.repo.json["contents"]
+     * @return null if unknown
+     */
+    @Nullable
+    public JsonArray getKnownContentsJson() {
+        if (!cachedCurrentJson.has("known_contents")) {
+            return null;
+        }
+        JsonArray contents = new JsonArray();
+        JsonObject known = cachedCurrentJson.getAsJsonObject("known_contents");
+        for (String contentId : known.keySet()) {
+            JsonObject content = known.getAsJsonObject(contentId).deepCopy();
+            content.addProperty("id", contentId);
+            contents.add(content);
+        }
+        return contents;
+    }
+
     public BaseContent[] getKnownContents() {
         try {
             if (cachedCurrentJson.has("known_contents")) {
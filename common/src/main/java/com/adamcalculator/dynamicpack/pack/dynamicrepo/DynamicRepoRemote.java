@@ -6,10 +6,15 @@ import com.adamcalculator.dynamicpack.pack.Remote;
 import com.adamcalculator.dynamicpack.sync.SyncBuilder;
 import com.adamcalculator.dynamicpack.util.JsonUtils;
 import com.adamcalculator.dynamicpack.util.Urls;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 public class DynamicRepoRemote extends Remote {
     public static final String REPO_JSON = "dynamicmcpack.repo.json";
@@ -23,6 +28,8 @@ public class DynamicRepoRemote extends Remote {
     private String buildUrl;
     private String packUrl;
     private DynamicRepoPreferences preferences;
+    private FileStateIndex fileIndex; // lazy
+    private ScrubQueue scrubQueue; // lazy
 
     public DynamicRepoRemote() {
     }
@@ -62,7 +69,7 @@ public class DynamicRepoRemote extends Remote {
      */
     @Override
     public boolean checkUpdateAvailable() throws IOException {
-        String content = Urls.parseTextContent(buildUrl, 64).trim();
+        String content = Urls.parseCachedTextContent(buildUrl, 64).trim();
         return getCurrentBuild() != Long.parseLong(content);
     }
 
@@ -73,6 +80,59 @@ public class DynamicRepoRemote extends Remote {
         return JsonUtils.optLong(cachedCurrentJson, "build", -1);
     }
 
+    /**
+     * Files not downloaded (or not verified) at latest sync (current.failed_files)
+     * <pre>{"path": {"url_base": "...", "hash": "*sha1*", "size": 1234}}</pre>
+     * @return null if all synced
+     */
+    @Nullable
+    public JsonObject getFailedFiles() {
+        if (!cachedCurrentJson.has("failed_files")) {
+            return null;
+        }
+        return cachedCurrentJson.getAsJsonObject("failed_files");
+    }
+
+    /**
+     * Files planned to delete at latest sync, but sync interrupted before deletion (current.pending_deletions)
+     * @return null if none
+     */
+    @Nullable
+    public JsonArray getPendingDeletions() {
+        if (!cachedCurrentJson.has("pending_deletions")) {
+            return null;
+        }
+        return cachedCurrentJson.getAsJsonArray("pending_deletions");
+    }
+
+    /**
+     * Ids of contents synced in current build (current.applied_contents)
+     * @return null if unknown
+     */
+    @Nullable
+    public Set<String> getAppliedContents() {
+        if (!cachedCurrentJson.has("applied_contents")) {
+            return null;
+        }
+        Set<String> ids = new HashSet<>();
+        for (JsonElement element : cachedCurrentJson.getAsJsonArray("applied_contents")) {
+            ids.add(element.getAsString());
+        }
+        return ids;
+    }
+
+    /**
+     * Hash of content manifest fully applied in current build (current.content_hashes)
+     * @return null if unknown
+     */
+    @Nullable
+    public String getAppliedContentHash(String contentId) {
+        if (!cachedCurrentJson.has("content_hashes")) {
+            return null;
+        }
+        return JsonUtils.optString(cachedCurrentJson.getAsJsonObject("content_hashes"), contentId, null);
+    }
+
     public JsonObject getCachedCurrentJson() {
         return cachedCurrentJson;
     }
@@ -85,6 +145,26 @@ public class DynamicRepoRemote extends Remote {
         return preferences;
     }
 
+    /**
+     * Persisted index of local files hashes. Loaded at first call
+     */
+    public synchronized FileStateIndex getFileIndex() {
+        if (fileIndex == null) {
+            fileIndex = FileStateIndex.load(parent);
+        }
+        return fileIndex;
+    }
+
+    /**
+     * Persisted queue of files trusted at launch and found corrupt. Loaded at first call
+     */
+    public synchronized ScrubQueue getScrubQueue() {
+        if (scrubQueue == null) {
+            scrubQueue = ScrubQueue.load(parent);
+        }
+        return scrubQueue;
+    }
+
     public String getUrl() {
         return url;
     }
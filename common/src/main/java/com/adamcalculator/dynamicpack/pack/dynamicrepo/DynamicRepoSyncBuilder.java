@@ -1,42 +1,79 @@
 package com.adamcalculator.dynamicpack.pack.dynamicrepo;
 
+import com.adamcalculator.dynamicpack.DynamicPackMod;
 import com.adamcalculator.dynamicpack.InputValidator;
 import com.adamcalculator.dynamicpack.SharedConstrains;
 import com.adamcalculator.dynamicpack.pack.DynamicResourcePack;
+import com.adamcalculator.dynamicpack.sync.DownloadOrder;
+import com.adamcalculator.dynamicpack.sync.DownloadScheduler;
 import com.adamcalculator.dynamicpack.sync.SyncBuilder;
 import com.adamcalculator.dynamicpack.sync.SyncProgress;
+import com.adamcalculator.dynamicpack.sync.SyncingTask;
 import com.adamcalculator.dynamicpack.util.*;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 public class DynamicRepoSyncBuilder implements SyncBuilder {
     public static int DOWNLOAD_THREADS_COUNT = 8;
-    private static int executorCounter = 0;
+    public static int DOWNLOAD_HOST_THREADS_COUNT = 6; // of DOWNLOAD_THREADS_COUNT to one host
+    public static int VERIFY_THREADS_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public static int MAX_DELTA_CHAIN = 16;
+    public static boolean PROBE_UNKNOWN_SIZES = true;
+    public static boolean TRUST_AT_LAUNCH = false;
 
     private final DynamicResourcePack pack;
     private final DynamicRepoRemote remote;
+    private final FileStateIndex fileIndex;
+    private final ScrubQueue scrubQueue;
 
-    private final Set<String> oldestFilesList = new HashSet<>();
+    private final CompactPathSet oldestFilesList = new CompactPathSet(); // every file of pack
+    private final Map<String, String> urlBases = new HashMap<>(); // interned by remote_parent
     private boolean doNotDeleteOldestFiles = false;
     private final HashMap<String, DynamicFile> dynamicFiles = new HashMap<>();
     private boolean updateAvailable;
     private long updateSize;
     private long downloadedSize;
     private JsonObject repoJson; // remote repo json (dynamicmcpack.repo.json)
+    private final Set<String> activeContentIds = new HashSet<>();
+    private boolean trustSyncedState; // Merkle digests of directories and synced manifests trusted
+    private final List<PendingSync> pendingSyncs = new ArrayList<>(); // recorded to index after download
+    private Map<String, List<String>> pathsByOwner; // lazy; files of synced manifests
+    private final Map<String, String> unchangedContents = new HashMap<>(); // id -> hash; not planned
+    private final Map<String, ContentSync> contentSyncs = new HashMap<>(); // id -> planned content
+    private final Set<String> deltaContents = new HashSet<>(); // changed by applied deltas
+    private boolean keepAppliedHashes; // content_hashes of current build still valid (except deltaContents)
+    private int failedFilesCount;
+    private final Path journalFile;
+    private SyncJournal journal; // of doUpdate
+    private boolean journalCompleted; // doUpdate completed, journal finished after pack filesystem closed
+    @Nullable private SyncJournal.State rolledForward; // copied to .zip in init, not persisted until close
+    private boolean trustMetadata; // files verified before accepted by size; sha1 checked by IntegrityScrubber
+    private ForkJoinPool verifyPool; // of init: shared by verifyLocalFiles of all contents, shards and deltas
+    private final Queue<LocalFileCheck> unverifiedChecks = new ConcurrentLinkedQueue<>();
+    private final Map<String, List<BundlePlan>> bundlesByContent = new HashMap<>(); // of changed manifests
 
     private boolean isReloadRequired;
     private boolean interrupted;
@@ -44,28 +81,82 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
     public DynamicRepoSyncBuilder(DynamicResourcePack pack, DynamicRepoRemote dynamicRepoRemote) {
         this.pack = pack;
         this.remote = dynamicRepoRemote;
+        this.fileIndex = dynamicRepoRemote.getFileIndex();
+        this.scrubQueue = dynamicRepoRemote.getScrubQueue();
+        this.journalFile = SyncJournal.fileOf(pack);
     }
 
 
     @Override
     public void init(boolean ignoreCaches) throws Exception {
+        trustMetadata = TRUST_AT_LAUNCH && SyncingTask.launchSyncing && !ignoreCaches;
+        verifyPool = new ForkJoinPool(VERIFY_THREADS_COUNT);
+        try {
+            initPlan(ignoreCaches);
+
+        } finally {
+            verifyPool.shutdown();
+            queueUnverifiedFiles();
+        }
+        if (updateAvailable && !interrupted) {
+            resolveUnknownSizes();
+        }
+    }
+
+    // files accepted by metadata in verifyLocalFiles
+    private void queueUnverifiedFiles() {
+        if (unverifiedChecks.isEmpty()) {
+            return;
+        }
+        for (LocalFileCheck check : unverifiedChecks) {
+            scrubQueue.addUnverified(check.path, check.urlBase, check.hash, check.size);
+        }
+        scrubQueue.save();
+        println("Files trusted by metadata: " + unverifiedChecks.size() + ". They will be verified in background");
+    }
+
+    private void initPlan(boolean ignoreCaches) throws Exception {
+        rollForwardJournal();
+
         // == about ignoreCaches ==
-        // Triggers a full re-check dynamic_repo because user
-        // may a change contents in ContentScreen.
+        // Triggers a full re-check dynamic_repo (manually sync).
         updateAvailable = ignoreCaches || remote.checkUpdateAvailable();
 
+        if (!updateAvailable) {
+            // user may a change contents in ContentScreen since current build
+            List<JsonObject> knownActiveContents = calcKnownActiveContents();
+            if (knownActiveContents != null && !isApplied(knownActiveContents)) {
+                updateAvailable = true;
+                if (initToggledContents(knownActiveContents)) {
+                    return;
+                }
+                debug("Active contents changed, but synced state of contents unknown. Full check...");
+            }
+        }
+
+        if (!updateAvailable && (remote.getFailedFiles() != null || remote.getPendingDeletions() != null || scrubQueue.hasCorrupt())) {
+            // files failed at latest sync or found corrupt by IntegrityScrubber downloaded again;
+            // deletions of interrupted sync applied
+            updateAvailable = true;
+            if (initFailedFiles()) {
+                return;
+            }
+        }
 
         if (updateAvailable) {
-            String packUrlContent = Urls.parseTextContent(remote.getPackUrl(), SharedConstrains.MOD_FILES_LIMIT, new UrlsController() {
+            String packUrlContent;
+            try (InputStream stream = Urls.openCachedContentStream(remote.getPackUrl(), SharedConstrains.MOD_FILES_LIMIT, false, new UrlsController() {
                 @Override
                 public boolean isInterrupted() {
                     return interrupted;
                 }
-            });
+            })) {
+                packUrlContent = PathsUtil.readString(stream);
+            }
 
             repoJson = JsonUtils.fromString(packUrlContent);
             long formatVersion;
-            if ((formatVersion = JsonUtils.getLong(repoJson, "formatVersion")) != 1) {
+            if ((formatVersion = JsonUtils.getLong(repoJson, "formatVersion")) != 1 && formatVersion != 2) {
                 throw new RuntimeException("Incompatible formatVersion: " + formatVersion);
             }
 
@@ -79,9 +170,6 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
                 throw new RuntimeException("Remote name of pack not valid.");
             }
 
-            // init oldestFilesList before init contents
-            PackUtil.openPackFileSystem(pack.getLocation(), packFileSystem -> PathsUtil.walkScan(oldestFilesList, packFileSystem));
-
             try {
                 // check
                 checkContents(repoJson.getAsJsonArray("contents"));
@@ -89,15 +177,31 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
                 // notify DynamicPackRemote about actual repoJson
                 remote.notifyNewRemoteJson(repoJson);
 
-                // init all active contents
-                for (JsonObject jsonContent : calcActiveContents()) {
-                    processContentInit(jsonContent);
+                List<JsonObject> activeContents = calcActiveContents(repoJson.getAsJsonArray("contents"));
+                for (JsonObject content : activeContents) {
+                    activeContentIds.add(JsonUtils.getString(content, "id"));
+                }
+
+                // files of pack changed only by this contents since last sync
+                trustSyncedState = !ignoreCaches && activeContentIds.equals(remote.getAppliedContents());
+
+                // only changes since current build; full check otherwise
+                if (ignoreCaches || !initFromDeltas()) {
+                    // init oldestFilesList before init contents
+                    PathsUtil.walkScan(oldestFilesList, pack.getSyncFileSystem());
+
+                    // init all active contents
+                    initActiveContents(activeContents);
                 }
 
             } catch (Exception e) {
                 // save the resource pack from disintegration
                 doNotDeleteOldestFiles = true;
                 throw e;
+
+            } finally {
+                // hashes calculated in init is useful in next time
+                fileIndex.save();
             }
         }
     }
@@ -125,34 +229,142 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
 
     @Override
     public boolean doUpdate(SyncProgress progress) throws Exception {
+        try {
+            boolean reloadRequired = internalDoUpdate(progress);
+            journalCompleted = true;
+            return reloadRequired;
+
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    // changes of .zip written on close: journal not needed after it
+    @Override
+    public void onSyncFileSystemClosed() {
+        if (journal != null && journalCompleted) {
+            journal.finish();
+        }
+    }
+
+    private boolean internalDoUpdate(SyncProgress progress) throws Exception {
         progress.setPhase("Opening a pack file-system");
-        PackUtil.openPackFileSystem(pack.getLocation(), LockUtils.createFileFinalizer(pack.getLocation()), packFileSystem -> {
-            internalProcessDynamicFiles(progress, packFileSystem);
-
-            debug("DELETE LIST: " + oldestFilesList);
-            if (!doNotDeleteOldestFiles && !interrupted) {
-                progress.setPhase("Deleting unnecessary files");
-                for (String s : oldestFilesList) {
-                    final Path pathToFile = packFileSystem.resolve(s);
-                    final String fileName = pathToFile.getFileName().toString();
-                    if (fileName.equalsIgnoreCase(SharedConstrains.CLIENT_FILE)) {
-                        continue;
-                    }
-                    progress.deleted(pathToFile);
-                    PathsUtil.nioSmartDelete(pathToFile);
-                    markReloadRequired(s);
+        Path packFileSystem = pack.getSyncFileSystem();
+        internalProcessDynamicFiles(progress, packFileSystem);
+        if (!interrupted) {
+            for (PendingSync pendingSync : pendingSyncs) {
+                if (pendingSync.isSynced()) {
+                    pendingSync.record(fileIndex);
+                } else {
+                    pendingSync.forget(fileIndex);
+                }
+            }
+        }
+
+        debug("DELETE LIST: " + oldestFilesList);
+        if (!doNotDeleteOldestFiles && !interrupted) {
+            progress.setPhase("Deleting unnecessary files");
+            for (String s : oldestFilesList) {
+                final Path pathToFile = packFileSystem.resolve(s);
+                final String fileName = pathToFile.getFileName().toString();
+                if (fileName.equalsIgnoreCase(SharedConstrains.CLIENT_FILE)) {
+                    continue;
                 }
+                progress.deleted(pathToFile);
+                PathsUtil.nioSmartDelete(pathToFile);
+                journal.deleted(s);
+                fileIndex.remove(s);
+                markReloadRequired(s);
             }
+            scrubQueue.synced(oldestFilesList);
+        }
 
-            progress.setPhase("Updating metadata...");
-            pack.getPackJson().getAsJsonObject("current").addProperty("build", JsonUtils.getLong(repoJson, "build"));
-            pack.updateJsonLatestUpdate();
-            pack.saveClientFile(packFileSystem);
-        });
+        progress.setPhase("Updating metadata...");
+        JsonObject current = pack.getPackJson().getAsJsonObject("current");
+        if (!doNotDeleteOldestFiles) {
+            // deleted at next sync: new build not lists them, deltas after it not too
+            if (interrupted && !oldestFilesList.isEmpty()) {
+                JsonArray pendingDeletions = new JsonArray();
+                oldestFilesList.forEach(pendingDeletions::add);
+                current.add("pending_deletions", pendingDeletions);
+            } else {
+                current.remove("pending_deletions");
+            }
+        }
+        // repoJson not fetched if only contents toggled
+        current.addProperty("build", repoJson == null ? remote.getCurrentBuild() : JsonUtils.getLong(repoJson, "build"));
+        JsonArray appliedContents = new JsonArray();
+        activeContentIds.stream().sorted().forEach(appliedContents::add);
+        current.add("applied_contents", appliedContents);
+        current.add("content_hashes", calcContentHashes());
+        // downloaded or listed in failed_files
+        scrubQueue.synced(dynamicFiles.keySet());
+        JsonObject failedFiles = calcFailedFiles();
+        failedFilesCount = failedFiles.size();
+        if (failedFilesCount > 0) {
+            warn("Partial sync: " + failedFilesCount + " files not synced. They will be downloaded again at next sync");
+            current.add("failed_files", failedFiles);
+        } else {
+            current.remove("failed_files");
+        }
+        pack.updateJsonLatestUpdate();
+        pack.saveClientFile(packFileSystem);
+        fileIndex.save();
+        scrubQueue.save();
         progress.setPhase("Success");
         return isReloadRequired();
     }
 
+    /**
+     * @return current.failed_files after sync: files not downloaded or not moved from temp
+     */
+    private JsonObject calcFailedFiles() {
+        JsonObject failedFiles = new JsonObject();
+        for (DynamicFile file : dynamicFiles.values()) {
+            if (file.getDownloadedPath() != null || file.getPath().contains(SharedConstrains.CLIENT_FILE)) {
+                continue;
+            }
+            JsonObject entry = new JsonObject();
+            entry.addProperty("url_base", file.getUrlBase());
+            entry.addProperty("hash", file.getHash());
+            entry.addProperty("size", file.getSize());
+            failedFiles.add(file.getPath(), entry);
+        }
+        return failedFiles;
+    }
+
+    @Override
+    public int getFailedFilesCount() {
+        return failedFilesCount;
+    }
+
+    /**
+     * @return current.content_hashes after sync: hashes of active contents fully synced
+     */
+    private JsonObject calcContentHashes() {
+        JsonObject contentHashes = new JsonObject();
+        for (String id : activeContentIds) {
+            String hash = null;
+            if (keepAppliedHashes) {
+                // deltas not change manifests of untouched contents
+                hash = deltaContents.contains(id) ? null : remote.getAppliedContentHash(id);
+
+            } else if (unchangedContents.containsKey(id)) {
+                hash = unchangedContents.get(id);
+
+            } else if (contentSyncs.containsKey(id) && contentSyncs.get(id).isSynced()) {
+                hash = contentSyncs.get(id).hash;
+            }
+
+            if (hash != null) {
+                contentHashes.addProperty(id, hash);
+            }
+        }
+        return contentHashes;
+    }
+
     @Override
     public void interrupt() {
         this.interrupted = true;
@@ -168,117 +380,821 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
         return updateSize;
     }
 
-    private void processContentInit(JsonObject jsonContentD1) throws Exception {
+    /**
+     * Contents toggled in current build: enabled contents fetched and checked, files owned only by
+     * disabled contents deleted. Other contents and files of pack not touched, repoJson not fetched
+     * @param activeContents from known_contents
+     * @return false if synced state of any applied content unknown; full init required
+     */
+    private boolean initToggledContents(List<JsonObject> activeContents) throws Exception {
+        Set<String> applied = remote.getAppliedContents();
+        if (applied == null) {
+            return false;
+        }
+        for (String id : applied) {
+            String hash = remote.getAppliedContentHash(id);
+            if (hash == null || !fileIndex.isSynced(id + "|" + hash)) {
+                return false;
+            }
+        }
+
+        for (JsonObject content : activeContents) {
+            activeContentIds.add(JsonUtils.getString(content, "id"));
+        }
+        Set<String> disabled = new HashSet<>(applied);
+        disabled.removeAll(activeContentIds);
+        Set<String> enabled = new HashSet<>(activeContentIds);
+        enabled.removeAll(applied);
+        println("Contents toggled. Enabled: " + enabled + "; disabled: " + disabled);
+
+        try {
+            Path packFileSystem = pack.getSyncFileSystem();
+            Map<String, List<String>> byOwner = getPathsByOwner();
+            for (Map.Entry<String, List<String>> e : byOwner.entrySet()) {
+                if (disabled.contains(contentIdOfOwner(e.getKey()))) {
+                    for (String path : e.getValue()) {
+                        if (Files.exists(packFileSystem.resolve(path))) {
+                            oldestFilesList.add(path);
+                        }
+                    }
+                }
+            }
+            planPendingDeletions(packFileSystem);
+            // files listed by active contents too
+            for (Map.Entry<String, List<String>> e : byOwner.entrySet()) {
+                if (activeContentIds.contains(contentIdOfOwner(e.getKey()))) {
+                    e.getValue().forEach(oldestFilesList::remove);
+                }
+            }
+            for (String id : disabled) {
+                fileIndex.forgetContent(id);
+            }
+            // state recorded before content disabled is outdated
+            for (String id : enabled) {
+                fileIndex.forgetContent(id);
+            }
+
+            // not changed contents skipped by hash
+            trustSyncedState = true;
+            initActiveContents(activeContents);
+
+        } catch (Exception e) {
+            // save the resource pack from disintegration
+            doNotDeleteOldestFiles = true;
+            throw e;
+
+        } finally {
+            fileIndex.save();
+        }
+        return true;
+    }
+
+    /**
+     * Only files failed at latest sync or corrupt planned (build and contents not changed). repoJson not fetched
+     * @return false if applied contents unknown; full init required
+     */
+    private boolean initFailedFiles() throws Exception {
+        Set<String> applied = remote.getAppliedContents();
+        if (applied == null) {
+            return false;
+        }
+        activeContentIds.addAll(applied);
+        keepAppliedHashes = true;
+
+        try {
+            Path packFileSystem = pack.getSyncFileSystem();
+            int planned = planFailedFiles(packFileSystem);
+            planPendingDeletions(packFileSystem);
+            println("Retry files failed at latest sync or corrupt: " + planned + "; pending deletions: " + oldestFilesList.size());
+
+        } finally {
+            fileIndex.save();
+        }
+        return true;
+    }
+
+    /**
+     * Add files failed at latest sync and found corrupt by IntegrityScrubber to dynamicFiles,
+     * if not planned or deleted already and not repaired locally since
+     * @return count of planned files
+     */
+    private int planFailedFiles(Path packFileSystem) throws IOException {
+        int planned = 0;
+        JsonObject failedFiles = remote.getFailedFiles();
+        if (failedFiles != null) {
+            for (String path : failedFiles.keySet()) {
+                JsonObject entry = failedFiles.getAsJsonObject(path);
+                long size = JsonUtils.optLong(entry, "size", ContentManifest.FileEntry.UNKNOWN_SIZE);
+                if (planRepair(packFileSystem, path, JsonUtils.getString(entry, "url_base"), JsonUtils.getString(entry, "hash"), size)) {
+                    planned++;
+                }
+            }
+        }
+
+        for (Map.Entry<String, ScrubQueue.FileRef> e : scrubQueue.getCorrupt().entrySet()) {
+            ScrubQueue.FileRef ref = e.getValue();
+            if (planRepair(packFileSystem, e.getKey(), ref.getUrlBase(), ref.getHash(), ref.getSize())) {
+                planned++;
+            }
+        }
+        return planned;
+    }
+
+    /**
+     * Files of interrupted sync not deleted to oldestFilesList, if not planned to download
+     */
+    private void planPendingDeletions(Path packFileSystem) {
+        JsonArray pending = remote.getPendingDeletions();
+        if (pending == null) {
+            return;
+        }
+        for (JsonElement element : pending) {
+            String path = element.getAsString();
+            checkPathSafety(path);
+            if (!dynamicFiles.containsKey(path) && Files.exists(packFileSystem.resolve(path))) {
+                oldestFilesList.add(path);
+            }
+        }
+    }
+
+    private boolean planRepair(Path packFileSystem, String path, String urlBase, String hash, long size) throws IOException {
+        if (dynamicFiles.containsKey(path) || oldestFilesList.contains(path)) {
+            return false;
+        }
+        checkPathSafety(path);
+        if (!InputValidator.isHashValid(hash)) {
+            return false;
+        }
+        Path filePath = packFileSystem.resolve(path);
+        if (PathsUtil.isPathFileExists(filePath) && hash.equalsIgnoreCase(fileIndex.getHash(path, filePath))) {
+            return false;
+        }
+
+        dynamicFiles.put(path, new DynamicFile(urlBase, path, size, hash));
+        updateSize += knownSize(size);
+        return true;
+    }
+
+    // scope is content id or id#shardUrl
+    private static String contentIdOfScope(String scope) {
+        int i = scope.indexOf('#');
+        return i < 0 ? scope : scope.substring(0, i);
+    }
+
+    private static String contentIdOfOwner(String owner) {
+        return owner.substring(0, owner.indexOf('|'));
+    }
+
+    /**
+     * Apply chain of deltas from current build to remote build (repo formatVersion 2).
+     * walkScan and check of not changed files skipped
+     * @return false if delta chain not available; full init required
+     */
+    private boolean initFromDeltas() throws Exception {
+        List<JsonObject> chain = calcDeltaChain();
+        if (chain == null) {
+            return false;
+        }
+
+        if (!activeContentIds.equals(remote.getAppliedContents())) {
+            debug("Active contents changed since current build. Deltas not applicable");
+            return false;
+        }
+
+        try {
+            applyDeltas(chain);
+            keepAppliedHashes = true;
+            // not listed in deltas
+            planFailedFiles(pack.getSyncFileSystem());
+            return true;
+
+        } catch (InterruptedException e) {
+            throw e;
+
+        } catch (Exception e) {
+            error("Failed to apply deltas. Fallback to full manifests...", e);
+            dynamicFiles.clear();
+            oldestFilesList.clear();
+            deltaContents.clear();
+            updateSize = 0;
+            return false;
+        }
+    }
+
+    /**
+     * @return deltas from current.build to repo build in order, or null if no chain
+     */
+    private List<JsonObject> calcDeltaChain() {
+        if (JsonUtils.getLong(repoJson, "formatVersion") < 2 || !repoJson.has("deltas")) {
+            return null;
+        }
+
+        long build = remote.getCurrentBuild();
+        long target = JsonUtils.getLong(repoJson, "build");
+        if (build < 0 || build >= target) {
+            return null;
+        }
+
+        // longest jump from every base
+        Map<Long, JsonObject> byFrom = new HashMap<>();
+        for (JsonElement element : repoJson.getAsJsonArray("deltas")) {
+            JsonObject delta = element.getAsJsonObject();
+            long from = JsonUtils.getLong(delta, "from");
+            long to = JsonUtils.getLong(delta, "to");
+            if (to <= from || to > target) {
+                continue;
+            }
+
+            JsonObject present = byFrom.get(from);
+            if (present == null || JsonUtils.getLong(present, "to") < to) {
+                byFrom.put(from, delta);
+            }
+        }
+
+        List<JsonObject> chain = new ArrayList<>();
+        while (build != target) {
+            JsonObject delta = byFrom.get(build);
+            if (delta == null || chain.size() >= MAX_DELTA_CHAIN) {
+                debug("No delta chain from build " + remote.getCurrentBuild() + " to " + target);
+                return null;
+            }
+            chain.add(delta);
+            build = JsonUtils.getLong(delta, "to");
+        }
+        return chain;
+    }
+
+    private void applyDeltas(List<JsonObject> chain) throws Exception {
+        Path packFileSystem = pack.getSyncFileSystem();
+
+        // merged changes of chain by path in pack; later delta wins
+        Map<String, LocalFileCheck> changed = new LinkedHashMap<>();
+        Map<String, String> deleted = new HashMap<>(); // path -> content id; null if pending from interrupted sync
+        JsonArray pending = remote.getPendingDeletions();
+        if (pending != null) {
+            for (JsonElement element : pending) {
+                String path = element.getAsString();
+                checkPathSafety(path);
+                deleted.put(path, null);
+            }
+        }
+        for (JsonObject deltaEntry : chain) {
+            if (interrupted) {
+                throw new InterruptedException("Interrupted");
+            }
+
+            DeltaManifest delta = fetchDelta(deltaEntry);
+            if (delta.getFormatVersion() != 2) {
+                throw new RuntimeException("Incompatible delta formatVersion: " + delta.getFormatVersion());
+            }
+            if (delta.getFrom() != JsonUtils.getLong(deltaEntry, "from") || delta.getTo() != JsonUtils.getLong(deltaEntry, "to")) {
+                throw new RuntimeException("Delta builds not equal to listed in repo");
+            }
+
+            // deleted first: file may be moved to other content in same delta
+            for (Map.Entry<String, DeltaManifest.ContentDelta> e : delta.getContents().entrySet()) {
+                if (!activeContentIds.contains(e.getKey())) {
+                    continue;
+                }
+
+                DeltaManifest.ContentDelta content = e.getValue();
+                for (String name : content.getDeleted()) {
+                    var path = getAndCheckPath(content.getParent(), name);
+                    InputValidator.throwIsPathInvalid(path);
+                    changed.remove(path);
+                    deleted.put(path, e.getKey());
+                    deltaContents.add(e.getKey());
+                }
+            }
+
+            for (Map.Entry<String, DeltaManifest.ContentDelta> e : delta.getContents().entrySet()) {
+                if (!activeContentIds.contains(e.getKey())) {
+                    continue;
+                }
+
+                DeltaManifest.ContentDelta content = e.getValue();
+                for (ContentManifest.FileEntry fileEntry : content.getChanged()) {
+                    var path = getAndCheckPath(content.getParent(), fileEntry.getName());
+                    InputValidator.throwIsPathInvalid(path);
+                    var filePath = packFileSystem.resolve(path);
+
+                    // block to remotely patch a client file dynamicmcpack.json
+                    if (filePath.getFileName().toString().contains(SharedConstrains.CLIENT_FILE)) {
+                        warn("File " + SharedConstrains.CLIENT_FILE + " can't be updated remotely!");
+                        continue;
+                    }
+
+                    if (!InputValidator.isHashValid(fileEntry.getHash())) {
+                        throw new RuntimeException("Hash not valid for file in delta: " + path);
+                    }
+
+                    var urlBase = getUrlBaseAndCheck(content.getRemoteParent());
+                    changed.put(path, new LocalFileCheck(path, filePath, urlBase, fileEntry.getHash(), fileEntry.getSize(), fileEntry.getCrc32()));
+                    deleted.remove(path);
+                    deltaContents.add(e.getKey());
+                }
+            }
+        }
+
+        // once per content: full check of changed contents at next full sync
+        deltaContents.forEach(fileIndex::forgetContent);
+
+        // only changed files checked
+        List<LocalFileCheck> checks = new ArrayList<>(changed.values());
+        verifyLocalFiles(checks);
+        if (interrupted) {
+            throw new InterruptedException("Interrupted");
+        }
+
+        for (LocalFileCheck check : checks) {
+            if (check.exception != null) {
+                throw check.exception;
+            }
+            if (check.needOverwrite) {
+                dynamicFiles.put(check.path, new DynamicFile(check.urlBase, check.path, check.size, check.hash));
+                updateSize += knownSize(check.size);
+            }
+        }
+
+        for (Map.Entry<String, String> e : deleted.entrySet()) {
+            // file still listed by other active content (not in its delta)
+            String path = e.getKey();
+            Set<String> owners = fileIndex.getOwnerContents(path);
+            if (e.getValue() != null && owners.stream().anyMatch(owner -> !owner.equals(e.getValue()) && activeContentIds.contains(owner))) {
+                debug("Deleted in '" + e.getValue() + "' but kept for other content: " + path);
+                continue;
+            }
+            if (Files.exists(packFileSystem.resolve(path))) {
+                oldestFilesList.add(path);
+            }
+        }
+        println("Applied " + chain.size() + " delta(s): " + checks.size() + " changed, " + oldestFilesList.size() + " deleted files");
+    }
+
+    /**
+     * Download delta and verify it hash
+     * @param deltaEntry dynamicmcpack.repo.json["deltas"][*deltaEntry*]
+     */
+    private DeltaManifest fetchDelta(JsonObject deltaEntry) throws Exception {
+        var url = JsonUtils.getString(deltaEntry, "url");
+        var hash = JsonUtils.getString(deltaEntry, "hash");
+        checkPathSafety(url);
+        url = remote.getUrl() + "/" + url;
+
+        InputStream stream = Urls.openContentStream(url, SharedConstrains.MOD_FILES_LIMIT, false, new UrlsController() {
+            @Override
+            public boolean isInterrupted() {
+                return interrupted;
+            }
+        });
+        return DeltaManifest.read(stream, hash, url);
+    }
+
+    /**
+     * Content manifests downloaded and verified concurrently (limited by DOWNLOAD_THREADS_COUNT),
+     * but processed one by one in order of repo for deterministic duplicates and updateSize
+     */
+    private void initActiveContents(List<JsonObject> activeContents) throws Exception {
+        if (activeContents.isEmpty()) {
+            return;
+        }
+
+        // contents with same hash as fully applied before: known files kept, manifest not fetched
+        List<JsonObject> changedContents = new ArrayList<>();
+        for (JsonObject jsonContent : activeContents) {
+            String id = JsonUtils.getString(jsonContent, "id");
+            String hash = JsonUtils.getString(jsonContent, "hash");
+            if (trustSyncedState && hash.equals(remote.getAppliedContentHash(id)) && fileIndex.isSynced(id + "|" + hash)) {
+                int kept = keepSyncedFiles(id);
+                unchangedContents.put(id, hash);
+                println("Content '" + id + "' not changed. Files kept without check: " + kept);
+                continue;
+            }
+            changedContents.add(jsonContent);
+        }
+        activeContents = changedContents;
+        if (activeContents.isEmpty()) {
+            return;
+        }
+
+        DownloadScheduler scheduler = DynamicPackMod.getDownloadScheduler();
+        List<CompletableFuture<ContentManifest>> fetched = activeContents.stream()
+                .map(jsonContent -> scheduler.submit(remote.getUrl(), () -> {
+                    if (interrupted) {
+                        throw new InterruptedException("Interrupted");
+                    }
+                    return fetchContent(jsonContent);
+                }))
+                .toList();
+        try {
+
+            int i = 0;
+            while (i < activeContents.size()) {
+                if (interrupted) {
+                    return;
+                }
+
+                ContentManifest manifest;
+                try {
+                    manifest = fetched.get(i).join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof Exception cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+                String id = JsonUtils.getString(activeContents.get(i), "id");
+                initContent(id, JsonUtils.getString(activeContents.get(i), "hash"), manifest, scheduler);
+                i++;
+            }
+
+        } finally {
+            // not started fetches skipped
+            fetched.forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Init content and its shards in order. Changed shards fetched concurrently;
+     * files of shards synced before with same hash kept without check
+     */
+    private void initContent(String id, String hash, ContentManifest manifest, DownloadScheduler scheduler) throws Exception {
+        long formatVersion;
+        if ((formatVersion = manifest.getFormatVersion()) != 1) {
+            throw new RuntimeException("Incompatible formatVersion: " + formatVersion);
+        }
+
+        String par = manifest.getParent();
+        String rem = manifest.getRemoteParent();
+        Set<String> directoryKeys = new HashSet<>();
+        Set<String> unchangedScopes = new HashSet<>();
+        ContentSync contentSync = new ContentSync(hash);
+        contentSyncs.put(id, contentSync);
+
+        ManifestSync mainSync = new ManifestSync(id + "|" + hash);
+        pendingSyncs.add(mainSync);
+        contentSync.manifests.add(mainSync);
+        processContentInit(id, manifest, par, rem, mainSync, directoryKeys);
+
+        List<ContentManifest.ShardRef> changedShards = new ArrayList<>();
+        Set<String> owners = new HashSet<>();
+        owners.add(mainSync.owner);
+        for (ContentManifest.ShardRef shard : manifest.getShards()) {
+            String owner = id + "|" + shard.getHash();
+            owners.add(owner);
+            if (trustSyncedState && fileIndex.isSynced(owner)) {
+                // the files continue to exist
+                List<String> paths = getPathsByOwner().getOrDefault(owner, List.of());
+                paths.forEach(oldestFilesList::remove);
+                debug("Shard " + shard.getUrl() + " not changed. Files kept without check: " + paths.size());
+
+                // digests of directories inside also actual
+                unchangedScopes.add(shardScope(id, shard) + "|");
+                continue;
+            }
+            changedShards.add(shard);
+        }
+        fileIndex.retainSynced(id, owners);
+
+        List<CompletableFuture<ContentManifest>> fetched = changedShards.stream()
+                .map(shard -> scheduler.submit(remote.getUrl(), () -> {
+                    if (interrupted) {
+                        throw new InterruptedException("Interrupted");
+                    }
+                    return fetchShard(id, par, shard);
+                }))
+                .toList();
+
+        int i = 0;
+        while (i < changedShards.size()) {
+            if (interrupted) {
+                return;
+            }
+
+            ContentManifest shardManifest;
+            try {
+                shardManifest = fetched.get(i).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            if ((formatVersion = shardManifest.getFormatVersion()) != 1) {
+                throw new RuntimeException("Incompatible shard formatVersion: " + formatVersion);
+            }
+
+            ContentManifest.ShardRef shard = changedShards.get(i);
+            ManifestSync shardSync = new ManifestSync(id + "|" + shard.getHash());
+            pendingSyncs.add(shardSync);
+            contentSync.manifests.add(shardSync);
+            processContentInit(shardScope(id, shard), shardManifest, par, rem, shardSync, directoryKeys);
+            i++;
+        }
+
+        // digests of directories not listed now forgotten
+        fileIndex.retainDirectoryDigests(id, key -> directoryKeys.contains(key) || unchangedScopes.stream().anyMatch(key::startsWith));
+    }
+
+    /**
+     * Remove files of all synced manifests of content from oldestFilesList
+     * @return count of kept files
+     */
+    private int keepSyncedFiles(String id) {
+        int kept = 0;
+        String prefix = id + "|";
+        for (Map.Entry<String, List<String>> e : getPathsByOwner().entrySet()) {
+            if (e.getKey().startsWith(prefix)) {
+                for (String path : e.getValue()) {
+                    if (oldestFilesList.remove(path)) {
+                        kept++;
+                    }
+                }
+            }
+        }
+        return kept;
+    }
+
+    private Map<String, List<String>> getPathsByOwner() {
+        if (pathsByOwner == null) {
+            pathsByOwner = fileIndex.getPathsByOwner();
+        }
+        return pathsByOwner;
+    }
+
+    /**
+     * Download content.json and verify it hash. Thread-safe
+     * @param jsonContentD1 dynamicmcpack.repo.json["contents"][*jsonContent*]
+     * @return parsed and verified content.json
+     */
+    private ContentManifest fetchContent(JsonObject jsonContentD1) throws Exception {
         // dynamicmcpack.repo.json["contents"][*jsonContent*]
         var id = JsonUtils.getString(jsonContentD1, "id");
         InputValidator.throwIsContentIdInvalid(id);
         var url = JsonUtils.getString(jsonContentD1, "url");
         var urlCompressed = JsonUtils.optString(jsonContentD1, "url_compressed", null);
+        var hash = JsonUtils.getString(jsonContentD1, "hash");
+
+        // binary alternative: no json parsing
+        var urlBinary = JsonUtils.optString(jsonContentD1, "url_binary", null);
+        var hashBinary = JsonUtils.optString(jsonContentD1, "hash_binary", null);
+        if (urlBinary != null && hashBinary != null) {
+            try {
+                return fetchBinaryManifest(id, urlBinary, hashBinary);
+
+            } catch (InterruptedIOException e) {
+                throw e;
+
+            } catch (Exception e) {
+                error("Binary manifest of " + id + " not available. Fallback to json...", e);
+            }
+        }
+
+        return fetchManifest(id, null, url, urlCompressed, hash);
+    }
+
+    private ContentManifest fetchBinaryManifest(String id, String url, String hash) throws Exception {
+        checkPathSafety(url);
+        url = remote.getUrl() + "/" + url;
+
+        ContentManifestStore store = DynamicPackMod.getManifestStore();
+        if (store != null) {
+            ContentManifest stored = store.readBinary(hash);
+            if (stored != null) {
+                Out.debug("[DynamicRepoSyncBuilder] " + id + " resolved from manifest store (binary)");
+                return stored;
+            }
+        }
+
+        InputStream stream = Urls.openContentStream(url, SharedConstrains.MOD_FILES_LIMIT, false, null);
+        return store != null ? store.readAndStoreBinary(stream, hash, url) : BinaryContentManifest.read(stream, hash, url);
+    }
+
+    /**
+     * Download shard of content and verify it hash. Thread-safe
+     * @param parent content.parent of sharded content
+     */
+    private ContentManifest fetchShard(String id, String parent, ContentManifest.ShardRef shard) throws Exception {
+        return fetchManifest(shardScope(id, shard), parent, shard.getUrl(), shard.getUrlCompressed(), shard.getHash());
+    }
+
+    /**
+     * @param scope key of manifest for directory digests
+     * @param inheritedParent parent of files if manifest is a shard
+     * @param url relative to repo
+     */
+    private ContentManifest fetchManifest(String scope, @Nullable String inheritedParent, String url, @Nullable String urlCompressed, String hash) throws Exception {
         boolean compressSupported = urlCompressed != null;
 
         checkPathSafety(url);
 
-        var hash = JsonUtils.getString(jsonContentD1, "hash");
-
         url = remote.getUrl() + "/" + url;
         if (compressSupported) {
             checkPathSafety(urlCompressed);
             urlCompressed = remote.getUrl() + "/" + urlCompressed;
         }
 
-        String content = compressSupported ? Urls.parseTextGZippedContent(urlCompressed, SharedConstrains.GZIP_LIMIT, null) : Urls.parseTextContent(url, SharedConstrains.MOD_FILES_LIMIT, null);
-        String receivedHash = Hashes.sha1sum(content.getBytes(StandardCharsets.UTF_8));
-        if (!hash.equals(receivedHash)) {
-            throw new SecurityException("Hash of content at " + url + " not verified. remote: " + hash + "; received: " + receivedHash);
+        // files of directories with same Merkle digest as at last sync skipped
+        ContentManifest.DirectoryFilter filter = trustSyncedState
+                ? (parent, dir, digest) -> digest.equals(fileIndex.getDirectoryDigest(directoryKey(scope, inheritedParent != null ? inheritedParent : parent, dir)))
+                : null;
+
+        // not changed content resolved without network
+        ContentManifestStore store = DynamicPackMod.getManifestStore();
+        if (store != null) {
+            ContentManifest stored = store.read(hash, filter);
+            if (stored != null) {
+                Out.debug("[DynamicRepoSyncBuilder] " + scope + " resolved from manifest store");
+                return stored;
+            }
         }
 
-        // content.json
-        JsonObject jsonContentD2 = JsonUtils.fromString(content);
-        PackUtil.openPackFileSystem(remote.parent.getLocation(), LockUtils.createFileFinalizer(pack.getLocation()), (packFileSystem) -> {
-            long formatVersion;
-            if ((formatVersion = JsonUtils.getLong(jsonContentD2, "formatVersion")) != 1) {
-                throw new RuntimeException("Incompatible formatVersion: " + formatVersion);
+        // content.json streamed: hashed while parsing
+        InputStream stream = compressSupported
+                ? Urls.openContentStream(urlCompressed, SharedConstrains.GZIP_LIMIT, true, null)
+                : Urls.openContentStream(url, SharedConstrains.MOD_FILES_LIMIT, false, null);
+        return store != null ? store.readAndStore(stream, hash, url, filter) : ContentManifest.read(stream, hash, url, filter);
+    }
+
+    /**
+     * @param scope content id or id#shardUrl
+     * @param manifestSync files of manifest recorded to it
+     * @param directoryKeys keys of listed directory digests
+     */
+    private void processContentInit(String scope, ContentManifest manifest, String par, String rem, ManifestSync manifestSync, Set<String> directoryKeys) throws Exception {
+        Path packFileSystem = pack.getSyncFileSystem();
+
+        // bundles of content cover files of its manifests (main and shards) processed after them
+        List<BundlePlan> contentBundles = bundlesByContent.computeIfAbsent(contentIdOfScope(scope), id -> new ArrayList<>());
+        for (ContentManifest.BundleRef bundle : manifest.getBundles()) {
+            checkPathSafety(bundle.getUrl());
+            String prefix = bundle.getDirectory() != null ? getAndCheckPath(par, bundle.getDirectory()) + "/" : getAndCheckPath(par, "");
+            contentBundles.add(new BundlePlan(remote.getUrl() + "/" + bundle.getUrl(), bundle.getHash(), bundle.getSize(), par, prefix));
+        }
+
+        // validate entries of content
+        List<LocalFileCheck> checks = new ArrayList<>();
+        for (final ContentManifest.FileEntry fileEntry : manifest.getFiles()) {
+            final String _relativePath = fileEntry.getName();
+            if (interrupted) {
+                return;
             }
 
-            JsonObject c = jsonContentD2.getAsJsonObject("content");
-            String par = JsonUtils.optString(c, "parent", "");
-            String rem = JsonUtils.optString(c, "remote_parent", "");
-            JsonObject files = c.getAsJsonObject("files");
+            boolean pathValidated = false;
+            try {
+                // string path *parent*/*key_name*
+                var path = getAndCheckPath(par, _relativePath);
+                InputValidator.throwIsPathInvalid(path);
+                pathValidated = true;
+
+                // nio.Path from path (location in pack)
+                var filePath = packFileSystem.resolve(path);
+
+                // block to remotely patch a client file dynamicmcpack.json
+                if (filePath.getFileName().toString().contains(SharedConstrains.CLIENT_FILE)) {
+                    warn("File " + SharedConstrains.CLIENT_FILE + " can't be updated remotely!");
+                    continue;
+                }
 
-            int processedFiles = 0;
-            for (final String _relativePath : files.keySet()) {
-                if (interrupted) {
-                    return;
+                // URL to file is urlBase + path
+                var urlBase = getUrlBaseAndCheck(rem);
+
+                // JSON-entry of file {"hash": "*hash*", "size": 1234"}
+                String fileHash = fileEntry.getHash();
+                long fileSize = fileEntry.getSize();
+                if (!InputValidator.isHashValid(fileHash)) {
+                    warn("Hash not valid for file Example: \"file/path\": {\"hash\": \"not valid here\"}" + path);
+                    continue;
                 }
 
-                boolean pathValidated = false;
-                try {
-                    // string path *parent*/*key_name*
-                    var path = getAndCheckPath(par, _relativePath);
-                    InputValidator.throwIsPathInvalid(path);
-                    pathValidated = true;
+                checks.add(new LocalFileCheck(path, filePath, urlBase, fileHash, fileSize, fileEntry.getCrc32()));
 
-                    // nio.Path from path (location in pack)
-                    var filePath = packFileSystem.resolve(path);
+            } catch (Exception e) {
+                String errorFileName = pathValidated ? _relativePath : "(failed to validate)";
+                error("Error while process file " + errorFileName + " in pack...", e);
+            }
+        }
 
-                    // block to remotely patch a client file dynamicmcpack.json
-                    if (filePath.getFileName().toString().contains(SharedConstrains.CLIENT_FILE)) {
-                        warn("File " + SharedConstrains.CLIENT_FILE + " can't be updated remotely!");
-                        continue;
-                    }
+        // hashing local files in parallel
+        verifyLocalFiles(checks);
+        if (interrupted) {
+            return;
+        }
 
-                    // full URL to file
-                    var fileRemoteUrl = getUrlFromPathAndCheck(rem, path);
+        // Merkle digests of directories: skipped are unchanged, others recorded after sync
+        Map<String, DirectoryDigest> contentDirectories = new HashMap<>();
+        List<String> skippedDirectories = new ArrayList<>();
+        for (Map.Entry<String, String> e : manifest.getDirectories().entrySet()) {
+            String dirPath = getAndCheckPath(par, e.getKey());
+            String key = directoryKey(scope, par, e.getKey());
+            directoryKeys.add(key);
+            if (manifest.getSkippedDirectories().contains(e.getKey())) {
+                skippedDirectories.add(dirPath);
+            } else {
+                DirectoryDigest directory = new DirectoryDigest(key, e.getValue());
+                contentDirectories.put(dirPath, directory);
+                pendingSyncs.add(directory);
+            }
+        }
 
-                    // JSON-entry of file {"hash": "*hash*", "size": 1234"}
-                    JsonObject fileExtra = files.getAsJsonObject(_relativePath);
-                    String fileHash = JsonUtils.getString(fileExtra, "hash");
-                    int fileSize = JsonUtils.optInt(fileExtra, "size", Integer.MAX_VALUE);
-                    if (!InputValidator.isHashValid(fileHash)) {
-                        warn("Hash not valid for file Example: \"file/path\": {\"hash\": \"not valid here\"}" + path);
-                        continue;
-                    }
+        // files of unchanged directories continue to exist and still owned by manifest
+        if (!skippedDirectories.isEmpty()) {
+            int kept = oldestFilesList.removeUnder(skippedDirectories, manifestSync.paths::add);
+            debug("Unchanged directories in '" + scope + "': " + skippedDirectories.size() + "; files kept without check: " + kept);
+        }
 
-                    // the file continues to exist
-                    oldestFilesList.remove(path);
+        // merge in order of content for deterministic result
+        int processedFiles = 0;
+        for (LocalFileCheck check : checks) {
+            var path = check.path;
 
-                    boolean isNeedOverwrite = false;
-                    if (Files.exists(filePath)) {
-                        String localFileHash = Hashes.sha1sum(filePath);
-                        if (!localFileHash.equals(fileHash)) {
-                            isNeedOverwrite = true;
-                        }
-                    } else {
-                        isNeedOverwrite = true;
-                    }
+            // the file continues to exist
+            oldestFilesList.remove(path);
 
-                    if (dynamicFiles.containsKey(path)) {
-                        warn("File duplicates in multiple content packs: " + path);
-                        updateSize -= dynamicFiles.get(path).getSize();
-                        isNeedOverwrite = true;
-                    }
+            if (check.exception != null) {
+                error("Error while process file " + path + " in pack...", check.exception);
+                forEachDirectory(contentDirectories, path, directory -> directory.failed = true);
+                manifestSync.failed = true;
+                continue;
+            }
+            manifestSync.paths.add(path);
+
+            boolean isNeedOverwrite = check.needOverwrite;
+            if (dynamicFiles.containsKey(path)) {
+                warn("File duplicates in multiple content packs: " + path);
+                updateSize -= knownSize(dynamicFiles.get(path).getSize());
+                isNeedOverwrite = true;
+            }
 
-                    if (isNeedOverwrite) {
-                        DynamicFile dynamicFile = new DynamicFile(fileRemoteUrl, path, fileSize, fileHash);
-                        updateSize += fileSize;
-                        dynamicFiles.put(path, dynamicFile);
+            if (isNeedOverwrite) {
+                DynamicFile dynamicFile = new DynamicFile(check.urlBase, path, check.size, check.hash);
+                updateSize += knownSize(check.size);
+                dynamicFiles.put(path, dynamicFile);
+                forEachDirectory(contentDirectories, path, directory -> directory.downloads.add(dynamicFile));
+                manifestSync.downloads.add(dynamicFile);
+                for (BundlePlan bundle : contentBundles) {
+                    if (path.startsWith(bundle.prefix)) {
+                        bundle.members.put(path, dynamicFile);
                     }
+                }
+            }
+
+            processedFiles++;
+        }
+
+        println("Total initialized files in content '" + scope + "': " + processedFiles + (manifest.getSkippedFiles() > 0 ? "; in unchanged directories: " + manifest.getSkippedFiles() : ""));
+    }
 
-                    processedFiles++;
+    /**
+     * Check local files of content by hash. Work split across all cores (verifyPool)
+     */
+    private void verifyLocalFiles(List<LocalFileCheck> checks) throws Exception {
+        verifyPool.submit(() -> checks.parallelStream().forEach(check -> {
+            if (interrupted) {
+                return;
+            }
 
-                } catch (Exception e) {
-                    String errorFileName = pathValidated ? _relativePath : "(failed to validate)";
-                    error("Error while process file " + errorFileName + " in pack...", e);
+            try {
+                if (Files.exists(check.filePath)) {
+                    String localFileHash = fileIndex.getCachedHash(check.path, check.filePath);
+                    if (localFileHash == null && check.crc32 != ContentManifest.FileEntry.UNKNOWN_CRC) {
+                        // .zip: crc32 and size from central directory; sha1 not calculated
+                        long localCrc = FileStateIndex.zipCrcOf(check.filePath);
+                        if (localCrc >= 0) {
+                            boolean same = localCrc == check.crc32 && (check.size < 0 || Files.size(check.filePath) == check.size);
+                            check.needOverwrite = !same;
+                            if (same) {
+                                fileIndex.put(check.path, check.filePath, check.hash);
+                            }
+                            return;
+                        }
+                    }
+                    if (localFileHash == null && trustMetadata && check.hash.equals(fileIndex.getKnownHash(check.path))
+                            && (check.size < 0 || Files.size(check.filePath) == check.size)) {
+                        // launch: verified before, only stat changed since; sha1 checked by IntegrityScrubber
+                        check.needOverwrite = false;
+                        unverifiedChecks.add(check);
+                        return;
+                    }
+                    if (localFileHash == null) {
+                        localFileHash = fileIndex.getHash(check.path, check.filePath);
+                    }
+                    check.needOverwrite = !localFileHash.equals(check.hash);
+                } else {
+                    check.needOverwrite = true;
                 }
+
+            } catch (Exception e) {
+                check.exception = e;
             }
-            
-            println("Total initialized files in content '" + id + "': " + processedFiles);
-        });
+        })).get();
     }
 
     private void internalProcessDynamicFiles(SyncProgress progress, Path packFileSystem) throws Exception {
         debug("internalProcessDynamicFiles begin");
-        NetworkStat.speedMultiplier = DOWNLOAD_THREADS_COUNT;
+        DownloadScheduler scheduler = DynamicPackMod.getDownloadScheduler();
+        // parallel downloads really allowed for repo host
+        NetworkStat.speedMultiplier = scheduler.getHostConcurrency();
         Path tempPath;
         if (pack.isZip()) {
             tempPath = new File(System.getProperty("java.io.tmpdir") + File.separator + SharedConstrains.TEMP_DIR_NAME, pack.getName()).toPath();
@@ -290,29 +1206,29 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
             tempPath = null;
         }
 
+        journal = SyncJournal.begin(journalFile, tempPath, rolledForward);
+        Map<String, String> planned = new LinkedHashMap<>();
+        for (DynamicFile file : dynamicFiles.values()) {
+            planned.put(file.getPath(), file.getHash());
+        }
+        journal.planned(planned);
+
+        Path rootPath = tempPath != null ? tempPath : packFileSystem;
+        // bundles submitted first (large); only files of bundle wait for it
+        Map<DynamicFile, CompletableFuture<?>> bundleOfFile = submitBundles(rootPath, packFileSystem, progress, scheduler);
 
-        ExecutorService executor = getExecutor();
-        CompletableFuture.supplyAsync(dynamicFiles::values).thenCompose(dynamicFiles -> {
+        // largest first: big file started last not holds whole sync
+        CompletableFuture.supplyAsync(() -> DownloadOrder.largestFirst(dynamicFiles.values(), DynamicFile::getSize)).thenCompose(dynamicFiles -> {
             List<CompletableFuture<DynamicFile>> downloadedFiles = dynamicFiles.stream()
                     .map(file -> {
-                        var s = CompletableFuture.supplyAsync(() -> {
-                            try {
-                                if (interrupted) {
-                                    throw new InterruptedException("Interrupted");
-                                }
-
-                                downloadFile((tempPath != null ? tempPath : packFileSystem), file, progress);
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
-                            }
-                            return file;
-
-                        }, executor).exceptionally(th -> {
-                            error("Error while download a file", th);
-                            return null;
-                        });
-
-                        return s.thenApply(r -> file);
+                        CompletableFuture<?> bundle = bundleOfFile.get(file);
+                        if (bundle == null) {
+                            return submitDownload(scheduler, rootPath, packFileSystem, file, progress);
+                        }
+                        // not extracted from bundle: one by one
+                        return bundle.thenCompose(v -> file.getDownloadedPath() != null
+                                ? CompletableFuture.completedFuture(file)
+                                : submitDownload(scheduler, rootPath, packFileSystem, file, progress));
                     }).toList();
 
             CompletableFuture<Void> done = CompletableFuture.allOf(downloadedFiles.toArray(new CompletableFuture[0]));
@@ -321,6 +1237,10 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
 
         }).whenComplete((files, th) -> {
             if (interrupted) {
+                // files in temp dir not moved to pack
+                if (tempPath != null && files != null) {
+                    files.forEach(file -> file.setDownloadPath(null));
+                }
                 return;
             }
 
@@ -339,11 +1259,14 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
 
                             PathsUtil.createDirsToFile(dest);
 
-                            Files.move(source, dest, StandardCopyOption.REPLACE_EXISTING);
-                            PathsUtil.nioSmartDelete(source);
+                            // temp copy deleted after .zip closed (see SyncJournal)
+                            Files.copy(source, dest, StandardCopyOption.REPLACE_EXISTING);
+                            fileIndex.put(file.getPath(), dest, file.getHash());
+                            journal.committed(file.getPath());
 
                         } catch (Exception e) {
                             error("Error while moving file " + file.getPath() + " from temp", e);
+                            file.setDownloadPath(null);
                         }
                     }
                 }
@@ -356,7 +1279,165 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
         debug("internalProcessDynamicFiles end");
     }
 
-    private void downloadFile(Path rootPath, DynamicFile dynamicFile, SyncProgress progress) throws Exception {
+    private CompletableFuture<DynamicFile> submitDownload(DownloadScheduler scheduler, Path rootPath, Path packFileSystem, DynamicFile file, SyncProgress progress) {
+        return scheduler.submit(file.getUrl(), () -> {
+            if (interrupted) {
+                throw new InterruptedException("Interrupted");
+            }
+
+            downloadFile(rootPath, packFileSystem, file, progress);
+            return file;
+
+        }).exceptionally(th -> {
+            error("Error while download a file", th);
+            return null;
+        }).thenApply(r -> file);
+    }
+
+    /**
+     * Bundles with enough needed files downloaded by one request each and extracted while streaming
+     * to staging dir; every member verified by hash of its file and moved to pack only if hash of bundle equal.
+     * Files not extracted (hash not equal, not in archive, bundle failed) downloaded one by one after their bundle
+     * @return future of bundle by files assigned to it; completes normally if bundle failed
+     */
+    private Map<DynamicFile, CompletableFuture<?>> submitBundles(Path rootPath, Path packFileSystem, SyncProgress progress, DownloadScheduler scheduler) {
+        Map<DynamicFile, CompletableFuture<?>> bundleOfFile = new HashMap<>();
+        int usedBundles = 0;
+        for (List<BundlePlan> contentBundles : bundlesByContent.values()) {
+            for (BundlePlan bundle : contentBundles) {
+                long needed = 0;
+                for (Map.Entry<String, DynamicFile> e : bundle.members.entrySet()) {
+                    DynamicFile file = e.getValue();
+                    // replaced by duplicate in other content or assigned to other bundle
+                    if (dynamicFiles.get(e.getKey()) == file && !bundleOfFile.containsKey(file)) {
+                        bundle.files.put(e.getKey(), file);
+                        needed += file.getSize() >= 0 ? file.getSize() : SharedConstrains.UNKNOWN_FILE_SIZE_ESTIMATE;
+                    }
+                }
+
+                // few needed files or most of bundle not needed: cheaper one by one
+                if (bundle.files.size() < SharedConstrains.BUNDLE_MIN_FILES || (bundle.size > 0 && needed * 2 < bundle.size)) {
+                    bundle.files.clear();
+                    continue;
+                }
+
+                CompletableFuture<?> future = scheduler.submit(bundle.url, () -> {
+                    if (interrupted) {
+                        throw new InterruptedException("Interrupted");
+                    }
+                    extractBundle(rootPath, packFileSystem, bundle, progress);
+                    return null;
+
+                }).exceptionally(th -> {
+                    error("Error while download a bundle " + bundle.url + ". Its files will be downloaded one by one", th);
+                    return null;
+                });
+                bundle.files.values().forEach(file -> bundleOfFile.put(file, future));
+                usedBundles++;
+            }
+        }
+        if (usedBundles > 0) {
+            println("Bundles to download: " + usedBundles + "; files in them: " + bundleOfFile.size());
+        }
+        return bundleOfFile;
+    }
+
+    private void extractBundle(Path rootPath, Path packFileSystem, BundlePlan bundle, SyncProgress progress) throws Exception {
+        boolean isPackRoot = rootPath == packFileSystem;
+        String bundleName = bundle.url.substring(bundle.url.lastIndexOf('/') + 1);
+        UrlsController controller = new UrlsController() {
+            @Override
+            public void onUpdate(UrlsController it) {
+                progress.downloading(bundleName, it.getPercentage());
+            }
+
+            @Override
+            public boolean isInterrupted() {
+                return interrupted;
+            }
+        };
+
+        // members staged outside of pack until hash of whole bundle verified
+        Path bundlesDir = new File(System.getProperty("java.io.tmpdir") + File.separator + SharedConstrains.TEMP_DIR_NAME, SharedConstrains.BUNDLES_DIR_NAME).toPath();
+        Files.createDirectories(bundlesDir);
+        Path staging = Files.createTempDirectory(bundlesDir, "bundle");
+        try {
+            Map<String, Path> staged = new LinkedHashMap<>();
+            DigestInputStream digestStream = new DigestInputStream(Urls.openContentStream(bundle.url, SharedConstrains.BUNDLE_FILE_SIZE_LIMIT, false, controller), Hashes.newSha1Digest());
+            try (ZipInputStream zip = new ZipInputStream(digestStream)) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (interrupted) {
+                        return;
+                    }
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+
+                    String path;
+                    try {
+                        path = getAndCheckPath(bundle.parent, entry.getName());
+                        InputValidator.throwIsPathInvalid(path);
+                    } catch (Exception e) {
+                        warn("Not safe path in bundle " + bundleName + ": " + entry.getName());
+                        continue;
+                    }
+                    DynamicFile file = bundle.files.get(path);
+                    if (file == null || staged.containsKey(path)) {
+                        continue;
+                    }
+
+                    Path stagedPath = staging.resolve(path);
+                    try {
+                        PackUtil.extractPackFile(zip, stagedPath, file.getHash(), SharedConstrains.DYNAMIC_PACK_HTTPS_FILE_SIZE_LIMIT);
+
+                    } catch (SecurityException e) {
+                        warn("File " + path + " of bundle " + bundleName + " not verified: " + e.getMessage());
+                        continue;
+                    }
+                    staged.put(path, stagedPath);
+                }
+
+                // central directory also hashed
+                byte[] buffer = new byte[8192];
+                //noinspection StatementWithEmptyBody
+                while (digestStream.read(buffer) != -1) {
+                }
+            }
+
+            String receivedHash = Hashes.hex(digestStream.getMessageDigest().digest());
+            if (!bundle.hash.equals(receivedHash)) {
+                throw new SecurityException("Hash of bundle " + bundleName + " not equal: expected: " + bundle.hash + "; actual: " + receivedHash);
+            }
+
+            for (Map.Entry<String, Path> e : staged.entrySet()) {
+                if (interrupted) {
+                    return;
+                }
+                String path = e.getKey();
+                DynamicFile file = bundle.files.get(path);
+                Path filePath = rootPath.resolve(path);
+                PathsUtil.moveReplacing(e.getValue(), filePath);
+                FilesLog.writtenByUrl(filePath, bundle.url);
+                downloadedSize += Files.size(filePath);
+                file.setDownloadPath(filePath);
+                if (isPackRoot) {
+                    fileIndex.put(path, filePath, file.getHash());
+                }
+                journalDownloaded(path, isPackRoot);
+            }
+            debug("Bundle " + bundleName + ": extracted " + staged.size() + "/" + bundle.files.size() + " files");
+
+        } finally {
+            try {
+                PathsUtil.recursiveDeleteDirectory(staging.toFile());
+            } catch (Exception e) {
+                error("Failed to delete staging dir of bundle " + bundleName, e);
+            }
+        }
+    }
+
+    private void downloadFile(Path rootPath, Path packFileSystem, DynamicFile dynamicFile, SyncProgress progress) throws Exception {
         Path filePath = rootPath.resolve(dynamicFile.getPath());
 
         // block to remotely patch a client file dynamicmcpack.json
@@ -365,11 +1446,15 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
             return;
         }
 
+        boolean isPackRoot = rootPath == packFileSystem;
         if (PathsUtil.isPathFileExists(filePath)) {
-            if (Hashes.sha1sum(filePath).equalsIgnoreCase(dynamicFile.getHash())) {
+            // in pack root hash already known by index; temp dir not indexed
+            String localHash = isPackRoot ? fileIndex.getHash(dynamicFile.getPath(), filePath) : Hashes.sha1sum(filePath);
+            if (localHash.equalsIgnoreCase(dynamicFile.getHash())) {
                 warn("File " + dynamicFile.getPath() + " not downloaded(shadow): already exists with equals hashes!");
                 dynamicFile.setDownloadPath(filePath);
                 downloadedSize += Files.size(filePath);
+                journalDownloaded(dynamicFile.getPath(), isPackRoot);
                 return;
             }
         }
@@ -396,29 +1481,167 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
             return;
         }
         dynamicFile.setDownloadPath(filePath);
+        if (isPackRoot) {
+            fileIndex.put(dynamicFile.getPath(), filePath, dynamicFile.getHash());
+        }
+        journalDownloaded(dynamicFile.getPath(), isPackRoot);
         progress.setPhase("File " + dynamicFile.getPath() + " downloaded!");
     }
 
-    private ExecutorService getExecutor() {
-        return Executors.newFixedThreadPool(DOWNLOAD_THREADS_COUNT, new ThreadFactory() {
-            int count = 1;
-            final int executorNum = (executorCounter++);
+    private static long knownSize(long size) {
+        return Math.max(size, 0);
+    }
 
-            @Override
-            public Thread newThread(@NotNull Runnable runnable) {
-                return new Thread(runnable, "DownloadWorker"+ executorNum +"-" + count++);
+    /**
+     * Sizes of files not listed in manifests requested by HEAD (bounded by count and time),
+     * the rest estimated by average of known sizes. So updateSize (and ETA) based on real numbers
+     */
+    private void resolveUnknownSizes() {
+        List<DynamicFile> unknown = new ArrayList<>();
+        for (DynamicFile file : dynamicFiles.values()) {
+            if (file.getSize() < 0) {
+                unknown.add(file);
             }
-        });
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+
+        if (PROBE_UNKNOWN_SIZES) {
+            List<DynamicFile> probe = unknown.subList(0, Math.min(unknown.size(), SharedConstrains.SIZE_PROBE_MAX_FILES));
+            DownloadScheduler scheduler = DynamicPackMod.getDownloadScheduler();
+            CompletableFuture<?>[] probes = probe.stream()
+                    .map(file -> scheduler.submit(file.getUrl(), () -> {
+                        try {
+                            long length = Urls.probeContentLength(file.getUrl(), SharedConstrains.SIZE_PROBE_TIMEOUT_MS);
+                            if (length >= 0) {
+                                file.setSize(length);
+                            }
+                        } catch (Exception e) {
+                            debug("Size of " + file.getPath() + " not probed: " + e);
+                        }
+                        return null;
+                    }))
+                    .toArray(CompletableFuture[]::new);
+            try {
+                CompletableFuture.allOf(probes).get(SharedConstrains.SIZE_PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+            } catch (TimeoutException e) {
+                debug("Size probe timed out");
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } catch (ExecutionException e) {
+                debug("Size probe failed: " + e);
+
+            } finally {
+                // not started probes skipped
+                for (CompletableFuture<?> future : probes) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        long known = 0;
+        int knownCount = 0;
+        int unknownCount = 0;
+        for (DynamicFile file : dynamicFiles.values()) {
+            if (file.getSize() >= 0) {
+                known += file.getSize();
+                knownCount++;
+            } else {
+                unknownCount++;
+            }
+        }
+        long average = knownCount > 0 ? known / knownCount : SharedConstrains.UNKNOWN_FILE_SIZE_ESTIMATE;
+        updateSize = known + average * unknownCount;
+        println("Files without size: " + unknown.size() + "; probed: " + (unknown.size() - unknownCount) + "; update size: " + updateSize);
     }
 
-    private String getUrlFromPathAndCheck(String remoteParent, String path) {
-        checkPathSafety(remoteParent);
+    // verified file in pack (dir packs) or in temp dir (.zip packs)
+    private void journalDownloaded(String path, boolean isPackRoot) {
+        if (isPackRoot) {
+            journal.committed(path);
+        } else {
+            journal.downloaded(path);
+        }
+    }
+
+    /**
+     * Roll forward sync interrupted by crash or game close (see SyncJournal): verified temp copies
+     * written to .zip pack, hashes of committed files remembered without re-calculation
+     */
+    private void rollForwardJournal() {
+        SyncJournal.State state = SyncJournal.read(journalFile);
+        if (state == null) {
+            return;
+        }
+
+        try {
+            Path packFileSystem = pack.getSyncFileSystem();
+            Path tempDir = state.getTempDir();
+            int recovered = 0;
+            for (Map.Entry<String, String> e : state.getPlanned().entrySet()) {
+                String path = e.getKey();
+                String hash = e.getValue();
+                checkPathSafety(path);
+                Path dest = packFileSystem.resolve(path);
+
+                if (tempDir != null) {
+                    if (state.getDeleted().contains(path)) {
+                        continue; // deleted by later sync
+                    }
+                    Path temp = tempDir.resolve(path);
+                    if (!state.isDownloaded(path) || !PathsUtil.isPathFileExists(temp)) {
+                        continue;
+                    }
+                    if (PathsUtil.isPathFileExists(dest) && hash.equals(fileIndex.getHash(path, dest))) {
+                        continue; // committed and persisted
+                    }
+                    if (!hash.equals(Hashes.sha1sum(temp))) {
+                        continue;
+                    }
+                    PathsUtil.createDirsToFile(dest);
+                    Files.copy(temp, dest, StandardCopyOption.REPLACE_EXISTING);
+                    fileIndex.put(path, dest, hash);
+                    recovered++;
+
+                } else if (state.isCommitted(path) && PathsUtil.isPathFileExists(dest)) {
+                    // downloaded to pack directly and verified
+                    fileIndex.put(path, dest, hash);
+                    recovered++;
+                }
+            }
+            for (String path : state.getDeleted()) {
+                if (!PathsUtil.isPathFileExists(packFileSystem.resolve(path))) {
+                    fileIndex.remove(path);
+                }
+            }
+            fileIndex.save();
+            println("Interrupted sync rolled forward. Recovered files: " + recovered + "/" + state.getPlanned().size());
+
+            // copies to .zip persisted only after close: carried to journal of doUpdate
+            if (tempDir == null || recovered == 0) {
+                state.finish();
+            } else {
+                rolledForward = state;
+            }
 
-        if (remoteParent.isEmpty()) {
-            return remote.getUrl() + "/" + path;
+        } catch (Exception e) {
+            error("Failed to roll forward interrupted sync", e);
         }
+    }
+
+    /**
+     * @return url of remote parent with trailing '/'. One instance for all files of remote parent
+     */
+    private String getUrlBaseAndCheck(String remoteParent) {
+        checkPathSafety(remoteParent);
 
-        return remote.getUrl() + "/" + remoteParent + "/" + path;
+        return urlBases.computeIfAbsent(remoteParent, r -> r.isEmpty()
+                ? remote.getUrl() + "/"
+                : remote.getUrl() + "/" + r + "/");
     }
 
     public static String getAndCheckPath(String parent, String path) {
@@ -438,11 +1661,28 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
     }
 
     /**
-     * @return active contents from repoJson
+     * @return active contents from known_contents of current build or null if unknown
+     */
+    @Nullable
+    private List<JsonObject> calcKnownActiveContents() {
+        JsonArray known = remote.getPreferences().getKnownContentsJson();
+        return known == null ? null : calcActiveContents(known);
+    }
+
+    private boolean isApplied(List<JsonObject> activeContents) {
+        Set<String> ids = new HashSet<>();
+        for (JsonObject content : activeContents) {
+            ids.add(JsonUtils.getString(content, "id"));
+        }
+        return ids.equals(remote.getAppliedContents());
+    }
+
+    /**
+     * @param contents dynamicmcpack.repo.json["contents"]
+     * @return active contents
      */
-    private List<JsonObject> calcActiveContents() {
+    private List<JsonObject> calcActiveContents(JsonArray contents) {
         List<JsonObject> activeContents = new ArrayList<>();
-        JsonArray contents = repoJson.getAsJsonArray("contents");
         int i = 0;
         while (i < contents.size()) {
             var content = contents.get(i).getAsJsonObject();
@@ -460,6 +1700,29 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
         return activeContents;
     }
 
+    private static String directoryKey(String scope, String parent, String dir) {
+        return scope + "|" + getAndCheckPath(parent, dir);
+    }
+
+    private static String shardScope(String contentId, ContentManifest.ShardRef shard) {
+        return contentId + "#" + shard.getUrl();
+    }
+
+    // directories of content containing path
+    private static void forEachDirectory(Map<String, DirectoryDigest> directories, String path, Consumer<DirectoryDigest> consumer) {
+        if (directories.isEmpty()) {
+            return;
+        }
+        int i = path.lastIndexOf('/');
+        while (i > 0) {
+            DirectoryDigest directory = directories.get(path.substring(0, i));
+            if (directory != null) {
+                consumer.accept(directory);
+            }
+            i = path.lastIndexOf('/', i - 1);
+        }
+    }
+
     public boolean isReloadRequired() {
         return isReloadRequired;
     }
@@ -471,6 +1734,140 @@ public class DynamicRepoSyncBuilder implements SyncBuilder {
         this.isReloadRequired = true;
     }
 
+    /**
+     * Local file of content, waiting for hash checking
+     */
+    private static class LocalFileCheck {
+        private final String path;
+        private final Path filePath;
+        private final String urlBase;
+        private final String hash;
+        private final long size;
+        private final long crc32;
+        private volatile boolean needOverwrite;
+        private volatile Exception exception;
+
+        private LocalFileCheck(String path, Path filePath, String urlBase, String hash, long size, long crc32) {
+            this.path = path;
+            this.filePath = filePath;
+            this.urlBase = urlBase;
+            this.hash = hash;
+            this.size = size;
+            this.crc32 = crc32;
+        }
+    }
+
+    /**
+     * Bundle archive of changed manifest and needed files of it
+     */
+    private static class BundlePlan {
+        private final String url;
+        private final String hash;
+        private final long size;
+        private final String parent; // content.parent; member names relative to it
+        private final String prefix; // bundled files start with it
+        private final Map<String, DynamicFile> members = new HashMap<>(); // needed files of manifests in bundle scope
+        private final Map<String, DynamicFile> files = new HashMap<>(); // assigned to this bundle
+
+        private BundlePlan(String url, String hash, long size, String parent, String prefix) {
+            this.url = url;
+            this.hash = hash;
+            this.size = size;
+            this.parent = parent;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * State saved to index when all files of it synced
+     */
+    private abstract static class PendingSync {
+        protected final List<DynamicFile> downloads = new ArrayList<>();
+        protected boolean failed;
+
+        protected boolean isSynced() {
+            if (failed) {
+                return false;
+            }
+            for (DynamicFile file : downloads) {
+                if (file.getDownloadedPath() == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        protected abstract void record(FileStateIndex index);
+
+        protected abstract void forget(FileStateIndex index);
+    }
+
+    /**
+     * Remote digest of directory
+     */
+    private static class DirectoryDigest extends PendingSync {
+        private final String key;
+        private final String digest;
+
+        private DirectoryDigest(String key, String digest) {
+            this.key = key;
+            this.digest = digest;
+        }
+
+        @Override
+        protected void record(FileStateIndex index) {
+            index.putDirectoryDigest(key, digest);
+        }
+
+        @Override
+        protected void forget(FileStateIndex index) {
+            index.removeDirectoryDigest(key);
+        }
+    }
+
+    /**
+     * Manifest (content.json or shard) with owned files
+     */
+    private static class ManifestSync extends PendingSync {
+        private final String owner;
+        private final List<String> paths = new ArrayList<>();
+
+        private ManifestSync(String owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        protected void record(FileStateIndex index) {
+            index.putSynced(owner, paths);
+        }
+
+        @Override
+        protected void forget(FileStateIndex index) {
+            index.removeSynced(owner);
+        }
+    }
+
+    /**
+     * Planned content: synced if all manifests of it synced
+     */
+    private static class ContentSync {
+        private final String hash;
+        private final List<ManifestSync> manifests = new ArrayList<>();
+
+        private ContentSync(String hash) {
+            this.hash = hash;
+        }
+
+        private boolean isSynced() {
+            for (ManifestSync manifest : manifests) {
+                if (!manifest.isSynced()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private void debug(String s) {
         pack.debug(s);
     }
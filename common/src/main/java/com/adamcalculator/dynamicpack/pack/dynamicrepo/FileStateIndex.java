@@ -0,0 +1,424 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.adamcalculator.dynamicpack.DynamicPackMod;
+import com.adamcalculator.dynamicpack.InputValidator;
+import com.adamcalculator.dynamicpack.SharedConstrains;
+import com.adamcalculator.dynamicpack.pack.DynamicResourcePack;
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.adamcalculator.dynamicpack.util.Out;
+import com.adamcalculator.dynamicpack.util.PathsUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Persisted local state of files in pack. Allows to skip sha1 re-calculation of file
+ * if size and stamp (zip-entry crc for .zip packs or mtime for directories) not changed since the latest calculation.
+ * <pre>
+ * config/dynamicpack/index/{packName}.json
+ * </pre>
+ */
+public class FileStateIndex {
+    public static final int FORMAT_VERSION = 1;
+    public static final String INDEX_DIR_NAME = "index";
+    private static final String OWNERS_SEPARATOR = " ";
+
+    private final Path file;
+    private final String packKind;
+    private final Map<String, Entry> files = new ConcurrentHashMap<>();
+    private final Map<String, String> directories = new ConcurrentHashMap<>(); // remote directory digests of synced dirs
+    private final Set<String> synced = ConcurrentHashMap.newKeySet(); // owners (contentId|manifestHash) of synced manifests
+    private volatile boolean dirty;
+
+    private FileStateIndex(Path file, String packKind) {
+        this.file = file;
+        this.packKind = packKind;
+    }
+
+    /**
+     * Load index of pack. If index file corrupted or outdated empty index returned
+     */
+    public static FileStateIndex load(DynamicResourcePack pack) {
+        Path file = new File(new File(DynamicPackMod.getConfigDir(), INDEX_DIR_NAME), pack.getName() + ".json").toPath();
+        return load(file, pack.isZip() ? "zip" : "dir");
+    }
+
+    /**
+     * @param file index file
+     * @param packKind "zip" or "dir"
+     */
+    public static FileStateIndex load(Path file, String packKind) {
+        FileStateIndex index = new FileStateIndex(file, packKind);
+        if (!Files.exists(file)) {
+            return index;
+        }
+
+        try {
+            Data data = SharedConstrains.GSON_COMPACT.fromJson(PathsUtil.readString(file), Data.class);
+            if (data == null || data.formatVersion != FORMAT_VERSION || !index.packKind.equals(data.kind) || data.files == null) {
+                Out.warn("[FileStateIndex] Index " + file + " outdated. Ignoring it.");
+                index.invalidate();
+                return index;
+            }
+
+            Map<String, String> owners = new HashMap<>(); // one instance of owner string
+            for (Map.Entry<String, Entry> e : data.files.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry != null && InputValidator.isHashValid(entry.hash)) {
+                    if (entry.owner != null) {
+                        entry.owner = owners.computeIfAbsent(entry.owner, o -> o);
+                    }
+                    index.files.put(e.getKey(), entry);
+                }
+            }
+            if (data.synced != null) {
+                index.synced.addAll(data.synced);
+            }
+            if (data.directories != null) {
+                index.directories.putAll(data.directories);
+            }
+
+        } catch (Exception e) {
+            Out.error("[FileStateIndex] Index " + file + " corrupted. Recovering as empty...", e);
+            index.invalidate();
+        }
+        return index;
+    }
+
+    /**
+     * Get sha1 of file. Uses cached value if stat of file not changed, otherwise calculate and remember it
+     * @param path relative path in pack (key)
+     * @param filePath nio.Path of file
+     */
+    public String getHash(String path, Path filePath) throws IOException {
+        long size = Files.size(filePath);
+        long stamp = stampOf(filePath);
+
+        Entry entry = files.get(path);
+        if (entry != null && entry.size == size && entry.stamp == stamp) {
+            return entry.hash;
+        }
+
+        String hash = Hashes.sha1sum(filePath);
+        files.put(path, new Entry(size, stamp, hash, entry == null ? null : entry.owner));
+        dirty = true;
+        return hash;
+    }
+
+    /**
+     * @return cached sha1 of file if stat of file not changed, otherwise null (not calculated)
+     */
+    @Nullable
+    public String getCachedHash(String path, Path filePath) throws IOException {
+        Entry entry = files.get(path);
+        if (entry != null && entry.size == Files.size(filePath) && entry.stamp == stampOf(filePath)) {
+            return entry.hash;
+        }
+        return null;
+    }
+
+    /**
+     * @return sha1 of latest calculation even if stat of file changed since; null if never calculated
+     */
+    @Nullable
+    public String getKnownHash(String path) {
+        Entry entry = files.get(path);
+        return entry == null ? null : entry.hash;
+    }
+
+    /**
+     * Remember hash of just written file
+     */
+    public void put(String path, Path filePath, String hash) {
+        try {
+            Entry old = files.get(path);
+            files.put(path, new Entry(Files.size(filePath), stampOf(filePath), hash, old == null ? null : old.owner));
+
+        } catch (Exception e) {
+            files.remove(path);
+            Out.debug("[FileStateIndex] put failed for " + path + ": " + e);
+        }
+        dirty = true;
+    }
+
+    /**
+     * @param key contentId|dirPathInPack or contentId#shardUrl|dirPathInPack
+     * @return digest of directory at last successful sync or null
+     */
+    public String getDirectoryDigest(String key) {
+        return directories.get(key);
+    }
+
+    /**
+     * Remember remote digest of directory. All files of directory must be synced
+     */
+    public void putDirectoryDigest(String key, String digest) {
+        if (!digest.equals(directories.put(key, digest))) {
+            dirty = true;
+        }
+    }
+
+    public void removeDirectoryDigest(String key) {
+        if (directories.remove(key) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forget digests of content (and its shards) not accepted by keep
+     */
+    public void retainDirectoryDigests(String contentId, Predicate<String> keep) {
+        if (directories.keySet().removeIf(key -> isOfContent(key, contentId) && !keep.test(key))) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * @param owner contentId|manifestHash (content.json or shard)
+     * @return true if all files of manifest synced and owned by it
+     */
+    public boolean isSynced(String owner) {
+        return synced.contains(owner);
+    }
+
+    /**
+     * Mark manifest synced and files of it owned by manifest.
+     * File may be owned by many manifests (duplicates); owners not synced anymore dropped
+     * @param paths paths in pack of manifest files
+     */
+    public void putSynced(String owner, Collection<String> paths) {
+        synced.add(owner);
+        for (String path : paths) {
+            Entry entry = files.get(path);
+            if (entry != null) {
+                entry.owner = mergeOwners(entry.owner, owner);
+            }
+        }
+        dirty = true;
+    }
+
+    public void removeSynced(String owner) {
+        if (synced.remove(owner)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forget synced manifests of content not in owners
+     */
+    public void retainSynced(String contentId, Set<String> owners) {
+        if (synced.removeIf(owner -> isOfContent(owner, contentId) && !owners.contains(owner))) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return paths of files by synced owners. Calculated by scan of all index
+     */
+    public Map<String, List<String>> getPathsByOwner() {
+        Map<String, List<String>> result = new HashMap<>();
+        for (Map.Entry<String, Entry> e : files.entrySet()) {
+            String owners = e.getValue().owner;
+            if (owners == null) {
+                continue;
+            }
+            for (String owner : owners.split(OWNERS_SEPARATOR)) {
+                if (synced.contains(owner)) {
+                    result.computeIfAbsent(owner, o -> new ArrayList<>()).add(e.getKey());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return ids of contents listing file in their manifests (synced or not); empty if unknown
+     */
+    public Set<String> getOwnerContents(String path) {
+        Entry entry = files.get(path);
+        if (entry == null || entry.owner == null) {
+            return Set.of();
+        }
+        Set<String> contents = new HashSet<>();
+        for (String owner : entry.owner.split(OWNERS_SEPARATOR)) {
+            int i = owner.indexOf('|');
+            contents.add(i < 0 ? owner : owner.substring(0, i));
+        }
+        return contents;
+    }
+
+    private String mergeOwners(String owners, String owner) {
+        if (owners == null || owners.equals(owner)) {
+            return owner;
+        }
+        StringBuilder merged = new StringBuilder(owner);
+        for (String o : owners.split(OWNERS_SEPARATOR)) {
+            if (!o.equals(owner) && synced.contains(o)) {
+                merged.append(OWNERS_SEPARATOR).append(o);
+            }
+        }
+        return merged.toString();
+    }
+
+    /**
+     * Forget all directory digests and synced manifests of content. Full check of content at next sync
+     */
+    public void forgetContent(String contentId) {
+        boolean changed = directories.keySet().removeIf(key -> isOfContent(key, contentId));
+        changed |= synced.removeIf(owner -> isOfContent(owner, contentId));
+        if (changed) {
+            dirty = true;
+        }
+    }
+
+    // keys are contentId|... or contentId#shard|... ('|' and '#' not allowed in content id)
+    private static boolean isOfContent(String key, String contentId) {
+        return key.length() > contentId.length()
+                && key.startsWith(contentId)
+                && (key.charAt(contentId.length()) == '|' || key.charAt(contentId.length()) == '#');
+    }
+
+    /**
+     * Forget file and synced state of contents owning it. Contents fully checked at next sync
+     */
+    public void forgetCorrupt(String path) {
+        Entry entry = files.remove(path);
+        if (entry == null) {
+            return;
+        }
+        dirty = true;
+        if (entry.owner != null) {
+            for (String owner : entry.owner.split(OWNERS_SEPARATOR)) {
+                forgetContent(owner.substring(0, owner.indexOf('|')));
+            }
+        }
+    }
+
+    public void remove(String path) {
+        if (files.remove(path) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forget all and delete index file.
+     */
+    public synchronized void invalidate() {
+        files.clear();
+        directories.clear();
+        synced.clear();
+        dirty = false;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Out.error("[FileStateIndex] Failed to delete index file " + file, e);
+        }
+    }
+
+    /**
+     * Save index if changed. Called by sync and IntegrityScrubber threads
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        // before snapshot: changes made while writing saved next time
+        dirty = false;
+
+        Path temp = null;
+        try {
+            Data data = new Data();
+            data.formatVersion = FORMAT_VERSION;
+            data.kind = packKind;
+            data.files = new HashMap<>(files);
+            data.directories = new HashMap<>(directories);
+            data.synced = new HashSet<>(synced);
+
+            PathsUtil.createDirsToFile(file);
+            temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.writeString(temp, SharedConstrains.GSON_COMPACT.toJson(data));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (Exception e) {
+            dirty = true;
+            Out.error("[FileStateIndex] Failed to save index " + file, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * zip-entry crc in .zip packs; last modified time in directories
+     */
+    private static long stampOf(Path filePath) throws IOException {
+        long crc = zipCrcOf(filePath);
+        if (crc >= 0) {
+            return crc;
+        }
+        return Files.getLastModifiedTime(filePath).toMillis();
+    }
+
+    /**
+     * crc32 of zip-entry from central directory (read once by zipfs, without decompression)
+     * @return -1 if file not in .zip
+     */
+    public static long zipCrcOf(Path filePath) throws IOException {
+        if (filePath.getFileSystem() != FileSystems.getDefault()) {
+            try {
+                Object crc = Files.getAttribute(filePath, "zip:crc");
+                if (crc instanceof Long l) {
+                    return l;
+                }
+            } catch (UnsupportedOperationException | IllegalArgumentException ignored) {
+                // not a zipfs
+            }
+        }
+        return -1;
+    }
+
+    // == gson ==
+
+    private static class Data {
+        private int formatVersion;
+        private String kind;
+        private HashMap<String, Entry> files;
+        private HashMap<String, String> directories;
+        private HashSet<String> synced;
+    }
+
+    private static class Entry {
+        private long size;
+        private long stamp;
+        private String hash;
+        private String owner; // space-separated manifests (contentId|manifestHash) listing this file
+
+        private Entry(long size, long stamp, String hash, String owner) {
+            this.size = size;
+            this.stamp = stamp;
+            this.hash = hash;
+            this.owner = owner;
+        }
+    }
+}
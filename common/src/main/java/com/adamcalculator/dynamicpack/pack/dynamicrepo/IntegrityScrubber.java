@@ -0,0 +1,169 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.adamcalculator.dynamicpack.DynamicPackMod;
+import com.adamcalculator.dynamicpack.SharedConstrains;
+import com.adamcalculator.dynamicpack.pack.DynamicResourcePack;
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.adamcalculator.dynamicpack.util.Out;
+import com.adamcalculator.dynamicpack.util.PackFileSystemSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Low-priority thread re-hashing files trusted at launch by metadata (see ScrubQueue).
+ * <p>Reads limited by SCRUB_BYTES_PER_SECOND. Each file read and verified under pack filesystem lock
+ * (see DynamicResourcePack.getFileSystemLock()); pack unmounted as soon as sync waits for it.
+ * Corrupt files forgotten in FileStateIndex and downloaded again at next sync</p>
+ */
+public class IntegrityScrubber extends Thread {
+    private static IntegrityScrubber instance;
+
+    private final byte[] buffer = new byte[64 * 1024];
+    private long readStart; // throttle window start ms
+    private long readBytes; // in throttle window
+
+    private IntegrityScrubber() {
+        setName("IntegrityScrubberThread");
+        setDaemon(true);
+        setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Start scrubber if not running
+     */
+    public static synchronized void launch() {
+        if (instance != null && instance.isAlive()) {
+            return;
+        }
+        instance = new IntegrityScrubber();
+        instance.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (DynamicResourcePack pack : DynamicPackMod.getPacksContainer().getPacks()) {
+                if (pack.getRemote() instanceof DynamicRepoRemote remote) {
+                    scrubPack(pack, remote);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Out.debug("[IntegrityScrubber] interrupted");
+
+        } catch (Exception e) {
+            Out.error("[IntegrityScrubber] Error while scrubbing", e);
+        }
+    }
+
+    private void scrubPack(DynamicResourcePack pack, DynamicRepoRemote remote) throws Exception {
+        ScrubQueue queue = remote.getScrubQueue();
+        FileStateIndex fileIndex = remote.getFileIndex();
+        Map<String, ScrubQueue.FileRef> unverified = queue.getUnverified();
+        if (unverified.isEmpty()) {
+            return;
+        }
+
+        Out.println("[IntegrityScrubber] Verifying " + unverified.size() + " files of " + pack.getName());
+        int checked = 0;
+        int corrupt = 0;
+        Semaphore lock = pack.getFileSystemLock();
+        PackFileSystemSession session = null;
+        try {
+            for (Map.Entry<String, ScrubQueue.FileRef> e : unverified.entrySet()) {
+                if (session == null) {
+                    // waits while sync holds pack filesystem
+                    lock.acquire();
+                    try {
+                        session = PackFileSystemSession.open(pack.getLocation(), null);
+                    } catch (Exception ex) {
+                        lock.release();
+                        throw ex;
+                    }
+                }
+
+                String path = e.getKey();
+                if (!queue.isUnverified(path)) {
+                    continue; // handled by sync
+                }
+                Path filePath = session.getRoot().resolve(path);
+                if (!Files.isRegularFile(filePath)) {
+                    queue.verified(path);
+                    continue;
+                }
+
+                String hash = throttledSha1(filePath);
+                if (e.getValue().getHash().equalsIgnoreCase(hash)) {
+                    fileIndex.put(path, filePath, e.getValue().getHash());
+                    queue.verified(path);
+
+                } else {
+                    Out.warn("[IntegrityScrubber] Corrupt file " + path + " in " + pack.getName() + ". It will be downloaded again at next sync");
+                    fileIndex.forgetCorrupt(path);
+                    queue.corrupt(path);
+                    corrupt++;
+                }
+
+                if (++checked % SharedConstrains.SCRUB_SAVE_EVERY_FILES == 0) {
+                    fileIndex.save();
+                    queue.save();
+                }
+
+                if (lock.hasQueuedThreads()) {
+                    // sync waits: unmount before next file
+                    close(session, lock);
+                    session = null;
+                }
+            }
+
+        } finally {
+            if (session != null) {
+                close(session, lock);
+            }
+            fileIndex.save();
+            queue.save();
+        }
+        Out.println("[IntegrityScrubber] " + pack.getName() + ": " + checked + " files checked, " + corrupt + " corrupt");
+    }
+
+    private static void close(PackFileSystemSession session, Semaphore lock) throws IOException {
+        try {
+            session.close();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private String throttledSha1(Path filePath) throws IOException, InterruptedException {
+        MessageDigest digest = Hashes.newSha1Digest();
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                throttle(read);
+            }
+        }
+        return Hashes.hex(digest.digest());
+    }
+
+    // sleep while read faster than SCRUB_BYTES_PER_SECOND
+    private void throttle(int read) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        if (now - readStart > 1000) {
+            readStart = now;
+            readBytes = 0;
+        }
+        readBytes += read;
+        long allowedMs = readBytes * 1000 / SharedConstrains.SCRUB_BYTES_PER_SECOND;
+        long elapsedMs = now - readStart;
+        if (allowedMs > elapsedMs) {
+            Thread.sleep(allowedMs - elapsedMs);
+        }
+    }
+}
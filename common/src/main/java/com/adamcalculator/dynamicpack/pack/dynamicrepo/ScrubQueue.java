@@ -0,0 +1,209 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.adamcalculator.dynamicpack.DynamicPackMod;
+import com.adamcalculator.dynamicpack.InputValidator;
+import com.adamcalculator.dynamicpack.SharedConstrains;
+import com.adamcalculator.dynamicpack.pack.DynamicResourcePack;
+import com.adamcalculator.dynamicpack.util.Out;
+import com.adamcalculator.dynamicpack.util.PathsUtil;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Files of pack trusted at launch by metadata only (sha1 not calculated) and files found corrupt by IntegrityScrubber.
+ * <pre>
+ * config/dynamicpack/scrub/{packName}.json
+ * {
+ *   "unverified": {"assets/a.png": {"url_base": "...", "hash": "*sha1*", "size": 1234}},
+ *   "corrupt": {"assets/b.png": {"url_base": "...", "hash": "*sha1*", "size": 1234}}
+ * }
+ * </pre>
+ * Unverified files re-hashed by IntegrityScrubber during play; corrupt files downloaded again at next sync.
+ */
+public class ScrubQueue {
+    public static final String SCRUB_DIR_NAME = "scrub";
+
+    private final Path file;
+    private final LinkedHashMap<String, FileRef> unverified = new LinkedHashMap<>();
+    private final LinkedHashMap<String, FileRef> corrupt = new LinkedHashMap<>();
+    private boolean dirty;
+
+    private ScrubQueue(Path file) {
+        this.file = file;
+    }
+
+    public static ScrubQueue load(DynamicResourcePack pack) {
+        return load(new File(new File(DynamicPackMod.getConfigDir(), SCRUB_DIR_NAME), pack.getName() + ".json").toPath());
+    }
+
+    /**
+     * Load queue. If file corrupted empty queue returned
+     */
+    public static ScrubQueue load(Path file) {
+        ScrubQueue queue = new ScrubQueue(file);
+        if (!Files.exists(file)) {
+            return queue;
+        }
+
+        try {
+            Data data = SharedConstrains.GSON_COMPACT.fromJson(PathsUtil.readString(file), Data.class);
+            if (data != null) {
+                putValid(queue.unverified, data.unverified);
+                putValid(queue.corrupt, data.corrupt);
+            }
+
+        } catch (Exception e) {
+            Out.error("[ScrubQueue] " + file + " corrupted. Recovering as empty...", e);
+            queue.dirty = true;
+        }
+        return queue;
+    }
+
+    private static void putValid(Map<String, FileRef> to, Map<String, FileRef> from) {
+        if (from == null) {
+            return;
+        }
+        for (Map.Entry<String, FileRef> e : from.entrySet()) {
+            FileRef ref = e.getValue();
+            if (ref != null && ref.urlBase != null && InputValidator.isHashValid(ref.hash)) {
+                to.put(e.getKey(), ref);
+            }
+        }
+    }
+
+    /**
+     * File accepted without sha1 check; verified later
+     */
+    public synchronized void addUnverified(String path, String urlBase, String hash, long size) {
+        unverified.put(path, new FileRef(urlBase, hash, size));
+        dirty = true;
+    }
+
+    /**
+     * @return copy of unverified files by path
+     */
+    public synchronized Map<String, FileRef> getUnverified() {
+        return new LinkedHashMap<>(unverified);
+    }
+
+    public synchronized boolean isUnverified(String path) {
+        return unverified.containsKey(path);
+    }
+
+    /**
+     * File verified (or not in pack anymore)
+     */
+    public synchronized void verified(String path) {
+        if (unverified.remove(path) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Hash of file not equal to expected; move to corrupt
+     */
+    public synchronized void corrupt(String path) {
+        FileRef ref = unverified.remove(path);
+        if (ref != null) {
+            corrupt.put(path, ref);
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return copy of corrupt files by path
+     */
+    public synchronized Map<String, FileRef> getCorrupt() {
+        return new LinkedHashMap<>(corrupt);
+    }
+
+    public synchronized boolean hasCorrupt() {
+        return !corrupt.isEmpty();
+    }
+
+    /**
+     * Files downloaded, deleted or listed in failed_files by sync: entries of them outdated
+     */
+    public synchronized void synced(Collection<String> paths) {
+        boolean changed = unverified.keySet().removeAll(paths);
+        changed |= corrupt.keySet().removeAll(paths);
+        if (changed) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Save queue if changed. Empty queue deleted
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        try {
+            if (unverified.isEmpty() && corrupt.isEmpty()) {
+                Files.deleteIfExists(file);
+
+            } else {
+                Data data = new Data();
+                data.unverified = unverified;
+                data.corrupt = corrupt;
+
+                PathsUtil.createDirsToFile(file);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.writeString(temp, SharedConstrains.GSON_COMPACT.toJson(data));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            dirty = false;
+
+        } catch (IOException e) {
+            Out.error("[ScrubQueue] Failed to save " + file, e);
+        }
+    }
+
+    // == gson ==
+
+    private static class Data {
+        private LinkedHashMap<String, FileRef> unverified;
+        private LinkedHashMap<String, FileRef> corrupt;
+    }
+
+    /**
+     * Remote file expected at path
+     */
+    public static class FileRef {
+        @SerializedName("url_base")
+        private String urlBase;
+        private String hash;
+        private long size;
+
+        private FileRef(String urlBase, String hash, long size) {
+            this.urlBase = urlBase;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getUrlBase() {
+            return urlBase;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * UNKNOWN_SIZE if not listed by remote
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.adamcalculator.dynamicpack.pack.dynamicrepo;
+
+import com.adamcalculator.dynamicpack.DynamicPackMod;
+import com.adamcalculator.dynamicpack.SharedConstrains;
+import com.adamcalculator.dynamicpack.pack.DynamicResourcePack;
+import com.adamcalculator.dynamicpack.util.Out;
+import com.adamcalculator.dynamicpack.util.PathsUtil;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-ahead journal of doUpdate. Every operation appended (and flushed) when it takes effect,
+ * so sync interrupted by crash or game close rolled forward at next sync without re-download.
+ * <pre>
+ * config/dynamicpack/journal/{packName}.jsonl
+ * {"op":"begin","temp":"/tmp/dynamicpack/pack"}
+ * {"op":"planned","path":"assets/a.png","hash":"*sha1*"}
+ * {"op":"downloaded","path":"assets/a.png"}
+ * {"op":"committed","path":"assets/a.png"}
+ * {"op":"deleted","path":"assets/b.png"}
+ * </pre>
+ * "downloaded" - verified copy in temp dir ("temp" is null for dir packs, downloaded to pack directly);
+ * "committed" - written to pack (for .zip packs persisted only after filesystem closed).
+ * <p>Journal deleted by finish() after pack filesystem closed</p>
+ */
+public class SyncJournal {
+    public static final String JOURNAL_DIR_NAME = "journal";
+
+    private final Path file;
+    @Nullable private final Path tempDir;
+    private final Set<String> committed = new HashSet<>();
+    @Nullable private final State carried;
+    private BufferedWriter writer;
+
+    private SyncJournal(Path file, @Nullable Path tempDir, @Nullable State carried) {
+        this.file = file;
+        this.tempDir = tempDir;
+        this.carried = carried;
+    }
+
+    public static Path fileOf(DynamicResourcePack pack) {
+        return new File(new File(DynamicPackMod.getConfigDir(), JOURNAL_DIR_NAME), pack.getName() + ".jsonl").toPath();
+    }
+
+    /**
+     * Start new journal (previous overwritten)
+     * @param tempDir dir of downloaded files before commit to .zip pack; null for dir packs
+     * @param carried rolled forward state not persisted yet: its downloaded files kept in new journal
+     */
+    public static SyncJournal begin(Path file, @Nullable Path tempDir, @Nullable State carried) {
+        SyncJournal journal = new SyncJournal(file, tempDir, carried);
+        try {
+            PathsUtil.createDirsToFile(file);
+            journal.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            JsonObject begin = op("begin");
+            begin.addProperty("temp", tempDir == null ? null : tempDir.toAbsolutePath().toString());
+            journal.append(begin, false);
+            if (carried != null && tempDir != null && tempDir.toAbsolutePath().equals(carried.tempDir)) {
+                for (Map.Entry<String, String> e : carried.planned.entrySet()) {
+                    if (carried.downloaded.contains(e.getKey())) {
+                        JsonObject planned = op("planned", e.getKey());
+                        planned.addProperty("hash", e.getValue());
+                        journal.append(planned, false);
+                        journal.append(op("downloaded", e.getKey()), false);
+                    }
+                }
+            }
+            journal.flush();
+
+        } catch (IOException e) {
+            journal.fail(e);
+        }
+        return journal;
+    }
+
+    /**
+     * Files to download. Flushed once for all files
+     */
+    public synchronized void planned(Map<String, String> hashesByPath) {
+        for (Map.Entry<String, String> e : hashesByPath.entrySet()) {
+            JsonObject planned = op("planned", e.getKey());
+            planned.addProperty("hash", e.getValue());
+            append(planned, false);
+        }
+        flush();
+    }
+
+    public synchronized void downloaded(String path) {
+        append(op("downloaded", path), true);
+    }
+
+    public synchronized void committed(String path) {
+        committed.add(path);
+        append(op("committed", path), true);
+    }
+
+    public synchronized void deleted(String path) {
+        append(op("deleted", path), true);
+    }
+
+    /**
+     * Sync completed and pack filesystem closed: drop temp copies of committed files and journal
+     */
+    public synchronized void finish() {
+        close();
+        deleteTempCopies(tempDir, committed);
+        if (carried != null) {
+            deleteTempCopies(carried.tempDir, carried.downloaded);
+        }
+        delete(file);
+    }
+
+    /**
+     * Close journal without finish (sync failed); rolled forward at next sync
+     */
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Out.error("[SyncJournal] Failed to close " + file, e);
+        }
+        writer = null;
+    }
+
+    private static JsonObject op(String op) {
+        JsonObject json = new JsonObject();
+        json.addProperty("op", op);
+        return json;
+    }
+
+    private static JsonObject op(String op, String path) {
+        JsonObject json = op(op);
+        json.addProperty("path", path);
+        return json;
+    }
+
+    private void append(JsonObject json, boolean flush) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(SharedConstrains.GSON_COMPACT.toJson(json));
+            writer.newLine();
+            if (flush) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // journal is best-effort: sync continues without it
+    private void fail(IOException e) {
+        Out.error("[SyncJournal] Failed to write " + file + ". Sync continues without journal", e);
+        close();
+        delete(file);
+    }
+
+    /**
+     * Read journal of interrupted sync
+     * @return null if journal not exists (previous sync finished)
+     */
+    @Nullable
+    public static State read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        State state = new State(file);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonObject json;
+                try {
+                    json = SharedConstrains.GSON_COMPACT.fromJson(line, JsonObject.class);
+                } catch (Exception e) {
+                    // last line may be written partially
+                    Out.warn("[SyncJournal] Broken line in " + file + ". Rest of journal ignored");
+                    break;
+                }
+                if (json == null || !json.has("op")) {
+                    continue;
+                }
+
+                String path = json.has("path") ? json.get("path").getAsString() : null;
+                switch (json.get("op").getAsString()) {
+                    case "begin" -> state.tempDir = json.has("temp") && !json.get("temp").isJsonNull() ? Path.of(json.get("temp").getAsString()) : null;
+                    case "planned" -> state.planned.put(path, json.get("hash").getAsString());
+                    case "downloaded" -> state.downloaded.add(path);
+                    case "committed" -> state.committed.add(path);
+                    case "deleted" -> state.deleted.add(path);
+                    default -> {
+                    }
+                }
+            }
+
+        } catch (Exception e) {
+            Out.error("[SyncJournal] Failed to read " + file, e);
+        }
+        return state;
+    }
+
+    private static void deleteTempCopies(@Nullable Path tempDir, Set<String> paths) {
+        if (tempDir == null) {
+            return;
+        }
+        for (String path : paths) {
+            try {
+                Path temp = tempDir.resolve(path);
+                if (Files.exists(temp)) {
+                    PathsUtil.nioSmartDelete(temp);
+                }
+            } catch (Exception e) {
+                Out.error("[SyncJournal] Failed to delete temp copy of " + path, e);
+            }
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Out.error("[SyncJournal] Failed to delete " + file, e);
+        }
+    }
+
+    /**
+     * Operations of interrupted sync
+     */
+    public static class State {
+        private final Path file;
+        @Nullable private Path tempDir;
+        private final Map<String, String> planned = new LinkedHashMap<>(); // path -> hash
+        private final Set<String> downloaded = new HashSet<>();
+        private final Set<String> committed = new HashSet<>();
+        private final Set<String> deleted = new HashSet<>();
+
+        private State(Path file) {
+            this.file = file;
+        }
+
+        @Nullable
+        public Path getTempDir() {
+            return tempDir;
+        }
+
+        public Map<String, String> getPlanned() {
+            return planned;
+        }
+
+        public boolean isDownloaded(String path) {
+            return downloaded.contains(path);
+        }
+
+        public boolean isCommitted(String path) {
+            return committed.contains(path);
+        }
+
+        public Set<String> getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * All operations rolled forward and persisted: drop temp copies and journal
+         */
+        public void finish() {
+            deleteTempCopies(tempDir, downloaded);
+            delete(file);
+        }
+    }
+}
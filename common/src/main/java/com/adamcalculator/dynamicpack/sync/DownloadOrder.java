@@ -0,0 +1,40 @@
+package com.adamcalculator.dynamicpack.sync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Order of submitting downloads to DownloadScheduler: largest first (LPT).
+ * <p>Big files start while all workers are free and small files fill the gaps behind them,
+ * so the end of sync is a tail of small files spread across idle workers instead of one
+ * big file started last while other workers wait</p>
+ */
+public class DownloadOrder {
+
+    /**
+     * @param size size of item, negative if unknown (placed as average of known sizes)
+     * @return new list sorted by size descending; equal sizes keep source order
+     */
+    public static <T> List<T> largestFirst(Collection<T> items, ToLongFunction<T> size) {
+        long known = 0;
+        int knownCount = 0;
+        for (T item : items) {
+            long s = size.applyAsLong(item);
+            if (s >= 0) {
+                known += s;
+                knownCount++;
+            }
+        }
+        long average = knownCount > 0 ? known / knownCount : 0;
+
+        List<T> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingLong((T item) -> {
+            long s = size.applyAsLong(item);
+            return s >= 0 ? s : average;
+        }).reversed());
+        return sorted;
+    }
+}
@@ -0,0 +1,213 @@
+package com.adamcalculator.dynamicpack.sync;
+
+import com.adamcalculator.dynamicpack.util.Out;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.IntSupplier;
+
+/**
+ * One scheduler of network tasks (downloads, manifests, HEAD probes) for all syncs.
+ * <p>Tasks queued per host and started only while running tasks below the global limit and
+ * the per-host limit, so waiting tasks not hold any thread. Runs on virtual threads if the
+ * runtime supports them (Java 21+), otherwise on daemon threads</p>
+ */
+public class DownloadScheduler {
+    private final IntSupplier globalLimit;
+    private final IntSupplier hostLimit;
+    private final ExecutorService executor;
+    private final boolean virtual;
+
+    private final Map<String, ArrayDeque<Task<?>>> queues = new LinkedHashMap<>(); // host -> waiting tasks
+    private final Map<String, Integer> runningByHost = new HashMap<>();
+    private int running;
+    private boolean shutdown;
+
+    /**
+     * @param globalLimit max running tasks; read on every dispatch (changed by config)
+     * @param hostLimit max running tasks of one host; read on every dispatch
+     */
+    public DownloadScheduler(IntSupplier globalLimit, IntSupplier hostLimit) {
+        this.globalLimit = globalLimit;
+        this.hostLimit = hostLimit;
+        ExecutorService virtualExecutor = createVirtualExecutor();
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : Executors.newCachedThreadPool(new ThreadFactory() {
+            int count = 1;
+
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "DownloadWorker-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Out.debug("[DownloadScheduler] created. Virtual threads: " + virtual);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() by reflection: mod compiled for Java 17
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Queue task
+     * @param url url of request; task limited by host of it
+     * @return completed by result of callable or exceptionally. Cancel of future skips not started task
+     */
+    public <T> CompletableFuture<T> submit(String url, Callable<T> callable) {
+        Task<T> task = new Task<>(hostOf(url), callable);
+        synchronized (this) {
+            if (shutdown) {
+                task.future.completeExceptionally(new CancellationException("DownloadScheduler is shut down"));
+                return task.future;
+            }
+            queues.computeIfAbsent(task.host, h -> new ArrayDeque<>()).add(task);
+        }
+        dispatch();
+        return task.future;
+    }
+
+    // start waiting tasks while limits allow
+    private void dispatch() {
+        List<Task<?>> start = new ArrayList<>();
+        synchronized (this) {
+            int limit = Math.max(1, globalLimit.getAsInt());
+            int hostLimit = Math.max(1, this.hostLimit.getAsInt());
+            boolean progress = true;
+            // a task of every host with free slots per pass: one host not blocks others
+            while (progress && running < limit && !queues.isEmpty()) {
+                progress = false;
+                var iterator = queues.entrySet().iterator();
+                while (iterator.hasNext() && running < limit) {
+                    var entry = iterator.next();
+                    if (runningByHost.getOrDefault(entry.getKey(), 0) >= hostLimit) {
+                        continue;
+                    }
+                    Task<?> task = entry.getValue().poll();
+                    if (entry.getValue().isEmpty()) {
+                        iterator.remove();
+                    }
+                    if (task == null || task.future.isDone()) {
+                        progress = true; // cancelled while waiting
+                        continue;
+                    }
+                    running++;
+                    runningByHost.merge(task.host, 1, Integer::sum);
+                    start.add(task);
+                    progress = true;
+                }
+            }
+        }
+
+        for (Task<?> task : start) {
+            try {
+                executor.execute(() -> run(task));
+            } catch (Exception e) {
+                // executor shut down
+                task.future.completeExceptionally(e);
+                finished(task);
+            }
+        }
+    }
+
+    // slot released before completion: dependent stages see it free
+    private <T> void run(Task<T> task) {
+        T result = null;
+        Throwable failure = null;
+        try {
+            if (!task.future.isDone()) {
+                result = task.callable.call();
+            }
+
+        } catch (Throwable e) {
+            failure = e;
+
+        } finally {
+            finished(task);
+            dispatch();
+        }
+
+        if (failure != null) {
+            task.future.completeExceptionally(failure);
+        } else {
+            task.future.complete(result);
+        }
+    }
+
+    private synchronized void finished(Task<?> task) {
+        running--;
+        runningByHost.computeIfPresent(task.host, (h, count) -> count <= 1 ? null : count - 1);
+    }
+
+    /**
+     * Cancel waiting tasks and interrupt running. Next submitted tasks cancelled immediately
+     */
+    public void shutdown() {
+        List<Task<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            queues.values().forEach(cancelled::addAll);
+            queues.clear();
+        }
+        for (Task<?> task : cancelled) {
+            task.future.completeExceptionally(new CancellationException("DownloadScheduler is shut down"));
+        }
+        executor.shutdownNow();
+        Out.debug("[DownloadScheduler] shut down. Cancelled tasks: " + cancelled.size());
+    }
+
+    /**
+     * @return max concurrent tasks of one host: lower of global and host limits
+     */
+    public int getHostConcurrency() {
+        return Math.max(1, Math.min(globalLimit.getAsInt(), hostLimit.getAsInt()));
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private static class Task<T> {
+        private final String host;
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(String host, Callable<T> callable) {
+            this.host = host;
+            this.callable = callable;
+        }
+    }
+}
@@ -31,6 +31,19 @@ public interface SyncBuilder {
      */
     boolean doUpdate(SyncProgress progress) throws Exception;
 
+    /**
+     * @return count of files not synced by latest doUpdate() (partial success)
+     */
+    default int getFailedFilesCount() {
+        return 0;
+    }
+
+    /**
+     * Called after doUpdate() when pack filesystem closed (changes of .zip persisted)
+     */
+    default void onSyncFileSystemClosed() {
+    }
+
     /**
      * Stop update
      */
@@ -13,14 +13,23 @@ public class SyncThread extends Thread {
     private SyncBuilder syncBuilder;
     private final LoopLog etaLoopLog = new LoopLog(1000);
     @Nullable private final DynamicResourcePack packSpecify;
+    private final boolean ignoreCaches;
 
     public SyncThread(String name) {
         this(name, null);
     }
 
     public SyncThread(String name, @Nullable DynamicResourcePack specifyPack) {
+        this(name, specifyPack, true);
+    }
+
+    /**
+     * @param ignoreCaches false if only changes since last sync required (e.g. contents toggled)
+     */
+    public SyncThread(String name, @Nullable DynamicResourcePack specifyPack, boolean ignoreCaches) {
         setName(name);
         this.packSpecify = specifyPack;
+        this.ignoreCaches = ignoreCaches;
     }
 
     @Override
@@ -35,7 +44,7 @@ public class SyncThread extends Thread {
         SyncingTask.launchTaskAsSyncing(() -> {
             try {
                 SyncingTask.currentRootSyncBuilder = syncBuilder = packSpecify == null ? SyncingTask.rootSyncBuilder() : packSpecify.syncBuilder();
-                syncBuilder.init(true);
+                syncBuilder.init(ignoreCaches);
 
                 if (syncBuilder.isUpdateAvailable()) {
                     boolean reloadRequired = syncBuilder.doUpdate(createSyncProgress());
@@ -22,6 +22,7 @@ public class SyncingTask {
     public static long eta;
     public static SyncBuilder currentRootSyncBuilder; // used in future for interrupt() download. Sets by Thread
     @Nullable public static String currentPackName;
+    public static boolean launchSyncing; // sets by GameStartSyncing
 
 
     /**
@@ -38,7 +39,14 @@ public class SyncingTask {
         packs.lockRescan();
 
         log("[SyncingTask] launchTaskAsSyncing start!");
-        runnable.run();
+        try {
+            runnable.run();
+        } finally {
+            // packs skipped by interrupt or errors may still hold a mounted filesystem
+            for (DynamicResourcePack pack : packs.getPacks()) {
+                pack.closeSyncFileSystem();
+            }
+        }
         log("[SyncingTask] launchTaskAsSyncing end!");
 
         setSyncing(false);
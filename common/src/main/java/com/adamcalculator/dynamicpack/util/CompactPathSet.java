@@ -0,0 +1,298 @@
+package com.adamcalculator.dynamicpack.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Set of '/'-separated paths stored as prefix trie over interned segments.
+ * <p>Every directory name stored once; each path is a node (parent, segment) in primitive arrays.
+ * Strings rebuilt only while iteration. Not thread-safe</p>
+ */
+public class CompactPathSet extends AbstractSet<String> {
+    private static final int NO_NODE = -1;
+
+    // interned segments
+    private final HashMap<String, Integer> segmentIds = new HashMap<>();
+    private String[] segments = new String[64];
+    private int segmentsCount;
+
+    // trie nodes
+    private int[] nodeParent = new int[256];
+    private int[] nodeSegment = new int[256];
+    private int nodesCount;
+    private final BitSet present = new BitSet();
+    private int size;
+
+    // children lookup: open addressing (parent, segment) -> node
+    private long[] childKeys = new long[512];
+    private int[] childNodes = new int[512];
+    private int childCount;
+
+    public CompactPathSet() {
+        Arrays.fill(childKeys, -1);
+    }
+
+    @Override
+    public boolean add(String path) {
+        int node = findNode(path, true);
+        if (present.get(node)) {
+            return false;
+        }
+        present.set(node);
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String path)) {
+            return false;
+        }
+        int node = findNode(path, false);
+        if (node == NO_NODE || !present.get(node)) {
+            return false;
+        }
+        present.clear(node);
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String path)) {
+            return false;
+        }
+        int node = findNode(path, false);
+        return node != NO_NODE && present.get(node);
+    }
+
+    /**
+     * Remove all paths inside given directories
+     * @return count of removed paths
+     */
+    public int removeUnder(Collection<String> dirs) {
+        return removeUnder(dirs, null);
+    }
+
+    /**
+     * @param removed receives every removed path
+     */
+    public int removeUnder(Collection<String> dirs, @Nullable Consumer<String> removed) {
+        BitSet dirNodes = new BitSet();
+        for (String dir : dirs) {
+            int node = findNode(dir, false);
+            if (node != NO_NODE) {
+                dirNodes.set(node);
+            }
+        }
+        if (dirNodes.isEmpty()) {
+            return 0;
+        }
+
+        int count = 0;
+        for (int node = present.nextSetBit(0); node >= 0; node = present.nextSetBit(node + 1)) {
+            for (int n = nodeParent[node]; n != NO_NODE; n = nodeParent[n]) {
+                if (dirNodes.get(n)) {
+                    present.clear(node);
+                    size--;
+                    count++;
+                    if (removed != null) {
+                        removed.accept(buildPath(node));
+                    }
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        segmentIds.clear();
+        Arrays.fill(segments, 0, segmentsCount, null);
+        segmentsCount = 0;
+        nodesCount = 0;
+        present.clear();
+        size = 0;
+        Arrays.fill(childKeys, -1);
+        childCount = 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next = present.nextSetBit(0);
+            private int last = NO_NODE;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = present.nextSetBit(next + 1);
+                return buildPath(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last == NO_NODE || !present.get(last)) {
+                    throw new IllegalStateException();
+                }
+                present.clear(last);
+                size--;
+            }
+        };
+    }
+
+    private int findNode(String path, boolean create) {
+        int node = NO_NODE;
+        int start = 0;
+        while (true) {
+            int end = path.indexOf('/', start);
+            String name = end == -1 ? path.substring(start) : path.substring(start, end);
+
+            int segment;
+            Integer id = segmentIds.get(name);
+            if (id != null) {
+                segment = id;
+            } else if (create) {
+                segment = newSegment(name);
+            } else {
+                return NO_NODE;
+            }
+
+            int child = getChild(node, segment);
+            if (child == NO_NODE) {
+                if (!create) {
+                    return NO_NODE;
+                }
+                child = newNode(node, segment);
+            }
+            node = child;
+
+            if (end == -1) {
+                return node;
+            }
+            start = end + 1;
+        }
+    }
+
+    private String buildPath(int node) {
+        // depth is small; collect from leaf to root
+        int depth = 0;
+        int length = 0;
+        for (int n = node; n != NO_NODE; n = nodeParent[n]) {
+            depth++;
+            length += segments[nodeSegment[n]].length();
+        }
+
+        String[] parts = new String[depth];
+        for (int n = node, i = depth - 1; n != NO_NODE; n = nodeParent[n], i--) {
+            parts[i] = segments[nodeSegment[n]];
+        }
+
+        StringBuilder builder = new StringBuilder(length + depth);
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                builder.append('/');
+            }
+            builder.append(parts[i]);
+        }
+        return builder.toString();
+    }
+
+    private int newSegment(String name) {
+        if (segmentsCount == segments.length) {
+            segments = Arrays.copyOf(segments, segmentsCount * 2);
+        }
+        segments[segmentsCount] = name;
+        segmentIds.put(name, segmentsCount);
+        return segmentsCount++;
+    }
+
+    private int newNode(int parent, int segment) {
+        if (nodesCount == nodeParent.length) {
+            nodeParent = Arrays.copyOf(nodeParent, nodesCount * 2);
+            nodeSegment = Arrays.copyOf(nodeSegment, nodesCount * 2);
+        }
+        int node = nodesCount++;
+        nodeParent[node] = parent;
+        nodeSegment[node] = segment;
+        putChild(key(parent, segment), node);
+        return node;
+    }
+
+    private static long key(int parent, int segment) {
+        return ((long) (parent + 1) << 32) | (segment & 0xFFFFFFFFL);
+    }
+
+    private int getChild(int parent, int segment) {
+        long key = key(parent, segment);
+        int mask = childKeys.length - 1;
+        int i = mix(key) & mask;
+        while (childKeys[i] != -1) {
+            if (childKeys[i] == key) {
+                return childNodes[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return NO_NODE;
+    }
+
+    private void putChild(long key, int node) {
+        if ((childCount + 1) * 2 > childKeys.length) {
+            rehash();
+        }
+        int mask = childKeys.length - 1;
+        int i = mix(key) & mask;
+        while (childKeys[i] != -1) {
+            i = (i + 1) & mask;
+        }
+        childKeys[i] = key;
+        childNodes[i] = node;
+        childCount++;
+    }
+
+    private void rehash() {
+        long[] oldKeys = childKeys;
+        int[] oldNodes = childNodes;
+        childKeys = new long[oldKeys.length * 2];
+        childNodes = new int[oldNodes.length * 2];
+        Arrays.fill(childKeys, -1);
+        int mask = childKeys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != -1) {
+                int i = mix(oldKeys[j]) & mask;
+                while (childKeys[i] != -1) {
+                    i = (i + 1) & mask;
+                }
+                childKeys[i] = oldKeys[j];
+                childNodes[i] = oldNodes[j];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,5 +1,7 @@
 package com.adamcalculator.dynamicpack.util;
 
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import java.io.File;
@@ -7,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 
 public class Hashes {
     public static String sha1sum(File file) throws IOException {
@@ -14,7 +17,9 @@ public class Hashes {
     }
 
     public static String sha1sum(Path path) throws IOException {
-        return DigestUtils.sha1Hex(Files.newInputStream(path));
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return DigestUtils.sha1Hex(inputStream);
+        }
     }
 
     public static String sha1sum(InputStream inputStream) throws IOException {
@@ -24,4 +29,30 @@ public class Hashes {
     public static String sha1sum(byte[] bytes) {
         return DigestUtils.sha1Hex(bytes);
     }
+
+    /**
+     * New sha1 MessageDigest for streaming calculation
+     */
+    public static MessageDigest newSha1Digest() {
+        return DigestUtils.getSha1Digest();
+    }
+
+    /**
+     * Lower-case hex of digest (same format as sha1sum)
+     */
+    public static String hex(byte[] digest) {
+        return Hex.encodeHexString(digest);
+    }
+
+    /**
+     * Bytes of hex hash (20 bytes for sha1)
+     * @throws IllegalArgumentException if not hex
+     */
+    public static byte[] unhex(String hash) {
+        try {
+            return Hex.decodeHex(hash);
+        } catch (DecoderException e) {
+            throw new IllegalArgumentException("Not a hex hash: " + hash, e);
+        }
+    }
 }
@@ -0,0 +1,236 @@
+package com.adamcalculator.dynamicpack.util;
+
+import com.adamcalculator.dynamicpack.SharedConstrains;
+import com.google.gson.reflect.TypeToken;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Disk cache of HTTP responses validated by conditional requests (ETag / Last-Modified).
+ * <p>Bodies evicted by least recently used when total size exceeds a limit</p>
+ * <pre>
+ * config/dynamicpack/http_cache/index.json
+ * config/dynamicpack/http_cache/*sha1 of url*
+ * </pre>
+ */
+public class HttpCache {
+    private static final String INDEX_FILE = "index.json";
+
+    private final Path dir;
+    private final long limit;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private long totalSize;
+    private long accessCounter; // order of access for LRU (not time: equal in one millisecond)
+
+    private HttpCache(Path dir, long limit) {
+        this.dir = dir;
+        this.limit = limit;
+    }
+
+    /**
+     * Load cache from dir. If index corrupted the cache dir cleared
+     */
+    public static HttpCache load(Path dir, long limit) {
+        HttpCache cache = new HttpCache(dir, limit);
+        cache.deleteTempFiles();
+        Path index = dir.resolve(INDEX_FILE);
+        if (!Files.exists(index)) {
+            return cache;
+        }
+
+        try {
+            Map<String, Entry> loaded = SharedConstrains.GSON_COMPACT.fromJson(PathsUtil.readString(index), new TypeToken<HashMap<String, Entry>>(){}.getType());
+            if (loaded != null) {
+                for (Map.Entry<String, Entry> e : loaded.entrySet()) {
+                    Entry entry = e.getValue();
+                    if (entry != null && entry.file != null && Files.isRegularFile(dir.resolve(entry.file))) {
+                        cache.entries.put(e.getKey(), entry);
+                        cache.totalSize += entry.size;
+                        cache.accessCounter = Math.max(cache.accessCounter, entry.lastAccess);
+                    }
+                }
+            }
+
+        } catch (Exception e) {
+            Out.error("[HttpCache] Index corrupted. Clearing cache...", e);
+            cache.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * @return cached entry with existing body or null
+     */
+    @Nullable
+    public synchronized Entry get(String url) {
+        Entry entry = entries.get(url);
+        if (entry != null && !Files.isRegularFile(dir.resolve(entry.file))) {
+            remove(url);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Open cached body (on 304 Not Modified)
+     */
+    public synchronized InputStream open(Entry entry) throws IOException {
+        entry.lastAccess = ++accessCounter;
+        save();
+        return Files.newInputStream(dir.resolve(entry.file));
+    }
+
+    /**
+     * Read body fully to cache and return stream of the cached copy
+     * @param url key
+     * @param etag ETag response header
+     * @param lastModified Last-Modified response header
+     * @param body network stream, closed here
+     */
+    public InputStream store(String url, @Nullable String etag, @Nullable String lastModified, InputStream body) throws IOException {
+        String fileName = Hashes.sha1sum(url.getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, fileName, ".tmp");
+        try (body; OutputStream out = Files.newOutputStream(temp)) {
+            body.transferTo(out);
+
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        synchronized (this) {
+            remove(url);
+            Files.move(temp, dir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+
+            Entry entry = new Entry();
+            entry.file = fileName;
+            entry.etag = etag;
+            entry.lastModified = lastModified;
+            entry.size = Files.size(dir.resolve(fileName));
+            entry.lastAccess = ++accessCounter;
+            entries.put(url, entry);
+            totalSize += entry.size;
+
+            InputStream result = Files.newInputStream(dir.resolve(fileName));
+            evict(url);
+            save();
+            return result;
+        }
+    }
+
+    public synchronized void remove(String url) {
+        Entry entry = entries.remove(url);
+        if (entry != null) {
+            totalSize -= entry.size;
+            try {
+                Files.deleteIfExists(dir.resolve(entry.file));
+            } catch (IOException e) {
+                Out.error("[HttpCache] Failed to delete " + entry.file, e);
+            }
+        }
+    }
+
+    /**
+     * Delete all cached responses
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalSize = 0;
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path path : files.toList()) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (IOException e) {
+                Out.error("[HttpCache] Failed to clear cache", e);
+            }
+        }
+    }
+
+    // interrupted store() may leave *.tmp files
+    private void deleteTempFiles() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.toList()) {
+                if (path.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            Out.error("[HttpCache] Failed to delete temp files", e);
+        }
+    }
+
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    // remove least recently used while size > limit (keep just stored entry)
+    private void evict(String keep) {
+        if (totalSize <= limit) {
+            return;
+        }
+
+        List<Map.Entry<String, Entry>> sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<String, Entry> e : sorted) {
+            if (totalSize <= limit) {
+                break;
+            }
+            if (!e.getKey().equals(keep)) {
+                Out.debug("[HttpCache] evict " + e.getKey());
+                remove(e.getKey());
+            }
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(dir);
+            Path index = dir.resolve(INDEX_FILE);
+            Path temp = dir.resolve(INDEX_FILE + ".tmp");
+            Files.writeString(temp, SharedConstrains.GSON_COMPACT.toJson(entries));
+            Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (Exception e) {
+            Out.error("[HttpCache] Failed to save index", e);
+        }
+    }
+
+    /**
+     * Cached response
+     */
+    public static class Entry {
+        private String file;
+        private String etag;
+        private String lastModified;
+        private long size;
+        private long lastAccess; // accessCounter
+
+        @Nullable
+        public String getEtag() {
+            return etag;
+        }
+
+        @Nullable
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
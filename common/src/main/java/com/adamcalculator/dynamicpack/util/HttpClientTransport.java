@@ -0,0 +1,81 @@
+package com.adamcalculator.dynamicpack.util;
+
+import com.adamcalculator.dynamicpack.SharedConstrains;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Transport by one shared java.net.http.HttpClient: HTTP/2 (multiplexed requests to one host by one connection)
+ * with fallback to HTTP/1.1 by server, and pool of connections reused by all requests
+ */
+public class HttpClientTransport implements HttpTransport {
+    private final HttpClient client;
+
+    public HttpClientTransport() {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(SharedConstrains.HTTP_CONNECT_TIMEOUT_MS))
+                .build();
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uriOf(url)).GET();
+        headers.forEach(request::header);
+
+        HttpResponse<InputStream> response = send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        Response result = new Response(response.statusCode(), response.uri().toString(), name -> response.headers().firstValue(name).orElse(null), response.body());
+        if (result.getCode() == 304) {
+            result.close();
+            return new Response(result.getCode(), result.getFinalUrl(), result::getHeader, null);
+        }
+        if (result.getCode() >= 400) {
+            result.close();
+            throw new HttpStatusException(result.getCode(), url);
+        }
+        return result;
+    }
+
+    @Override
+    public Response head(String url, int timeout) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uriOf(url))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(timeout))
+                .build();
+
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        return new Response(response.statusCode(), response.uri().toString(), name -> response.headers().firstValue(name).orElse(null), null);
+    }
+
+    private static URI uriOf(String url) throws IOException {
+        try {
+            return URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed url " + url, e);
+        }
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, handler);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted request to " + request.uri());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "HttpClient";
+    }
+}
@@ -0,0 +1,19 @@
+package com.adamcalculator.dynamicpack.util;
+
+import java.io.IOException;
+
+/**
+ * Error status (&gt;= 400) of HttpTransport request
+ */
+public class HttpStatusException extends IOException {
+    private final int code;
+
+    public HttpStatusException(int code, String url) {
+        super("Server returned HTTP " + code + " for url " + url);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,101 @@
+package com.adamcalculator.dynamicpack.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * HTTP requests of Urls. Transports know nothing about trust of hosts and limits: checked by Urls
+ * @see UrlConnectionTransport
+ * @see HttpClientTransport
+ */
+public interface HttpTransport {
+    /**
+     * GET request
+     * @param headers request headers
+     * @throws IOException on network error
+     * @throws HttpStatusException on error status (&gt;= 400)
+     */
+    Response get(String url, Map<String, String> headers) throws IOException;
+
+    /**
+     * HEAD request
+     * @param timeout connect and response timeout in ms
+     */
+    Response head(String url, int timeout) throws IOException;
+
+    /**
+     * For logs
+     */
+    String getName();
+
+    /**
+     * Status, headers and body of response
+     */
+    class Response {
+        private final int code;
+        private final String finalUrl;
+        private final Function<String, String> headers;
+        @Nullable private final InputStream body;
+
+        /**
+         * @param finalUrl url after redirects
+         * @param headers header value by name (case-insensitive)
+         * @param body null for HEAD and 304
+         */
+        public Response(int code, String finalUrl, Function<String, String> headers, @Nullable InputStream body) {
+            this.code = code;
+            this.finalUrl = finalUrl;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public String getFinalUrl() {
+            return finalUrl;
+        }
+
+        @Nullable
+        public String getHeader(String name) {
+            return headers.apply(name);
+        }
+
+        /**
+         * @return Content-Length or -1 if unknown
+         */
+        public long getContentLength() {
+            String value = getHeader("Content-Length");
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        @Nullable
+        public InputStream getBody() {
+            return body;
+        }
+
+        /**
+         * Close body without reading (response not used)
+         */
+        public void close() {
+            if (body != null) {
+                try {
+                    body.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
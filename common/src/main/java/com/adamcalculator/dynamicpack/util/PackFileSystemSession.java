@@ -0,0 +1,95 @@
+package com.adamcalculator.dynamicpack.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pack filesystem (dir or zip) mounted once and shared by many operations.
+ * <p>Zip central directory read only one time. Closed exactly once, repeated close() ignored</p>
+ */
+public class PackFileSystemSession implements AutoCloseable {
+    private final File file;
+    @Nullable private final Runnable preClose;
+    @Nullable private final FileSystem fileSystem; // null for directories
+    private final Path root;
+    private boolean closed;
+
+    private PackFileSystemSession(File file, @Nullable Runnable preClose, @Nullable FileSystem fileSystem, Path root) {
+        this.file = file;
+        this.preClose = preClose;
+        this.fileSystem = fileSystem;
+        this.root = root;
+    }
+
+    /**
+     * Mount file (or dir) as nio.Path
+     * @param file resourcepack file
+     * @param preClose preClose runnable. See LockUtils...
+     */
+    public static PackFileSystemSession open(File file, @Nullable Runnable preClose) throws IOException {
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getCanonicalPath());
+        }
+
+        if (file.isDirectory()) {
+            return new PackFileSystemSession(file, preClose, null, file.toPath());
+
+        } else if (file.isFile() && file.getName().toLowerCase().endsWith(".zip")) {
+            Map<String, String> env = new HashMap<>();
+            env.put("create", "true");
+
+            URI uri = URI.create("jar:" + file.toPath().toUri());
+            FileSystem fs = FileSystems.newFileSystem(uri, env);
+            return new PackFileSystemSession(file, preClose, fs, fs.getPath(""));
+
+        } else {
+            throw new FailedOpenPackFileSystemException("Failed to recognize pack filesystem: not dir or zip");
+        }
+    }
+
+    /**
+     * @return root of pack
+     * @throws IllegalStateException if session already closed
+     */
+    public synchronized Path getRoot() {
+        if (closed) {
+            throw new IllegalStateException("Pack filesystem session of " + file + " already closed");
+        }
+        return root;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close filesystem (zip changes written here). Only first call take effect
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (fileSystem != null) {
+            if (preClose != null) {
+                preClose.run();
+            }
+            fileSystem.close();
+        }
+    }
+}
@@ -4,15 +4,13 @@ import com.adamcalculator.dynamicpack.SharedConstrains;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
 
 public class PackUtil {
     public static void openPackFileSystem(File file, ThrowingConsumer<Exception, Path> consumer) throws Exception {
@@ -28,48 +26,13 @@ public class PackUtil {
      * @throws Exception any exception
      */
     public static void openPackFileSystem(File file, @Nullable Runnable preClose, ThrowingConsumer<Exception, Path> consumer) throws Exception {
-        if (!file.exists()) {
-            throw new FileNotFoundException(file.getCanonicalPath());
-        }
-
-        if (file.isDirectory()) {
-            consumer.accept(file.toPath());
-
-
-        } else if (file.isFile() && file.getName().toLowerCase().endsWith(".zip")) {
-            Map<String, String> env = new HashMap<>();
-            env.put("create", "true");
-
-            URI uri = URI.create("jar:" + file.toPath().toUri());
-            Exception ex = null;
-            FileSystem fs = null;
-            try {
-                fs = FileSystems.newFileSystem(uri, env);
-                try {
-                    consumer.accept(fs.getPath(""));
-                } catch (Exception e) {
-                    ex = e;
-                }
-                
-            } finally {
-                if (fs != null) {
-                    if (preClose != null) {
-                        preClose.run();
-                    }
-                    fs.close();
-                }
-            }
-            if (ex != null) {
-                throw ex;
-            }
-
-        } else {
-            throw new FailedOpenPackFileSystemException("Failed to recognize pack filesystem: not dir or zip");
+        try (PackFileSystemSession session = PackFileSystemSession.open(file, preClose)) {
+            consumer.accept(session.getRoot());
         }
     }
 
     /**
-     * Download file for dynamic_repo
+     * Download file for dynamic_repo. Failed attempt of big file resumed by next attempt (see PartialDownload)
      * @throws IOException if latest attempt failed exception rethrown
      */
     public static void downloadPackFile(String url, Path path, String hash, UrlsController controller) throws IOException {
@@ -79,14 +42,10 @@ public class PackUtil {
             try {
                 PathsUtil.createDirsToFile(path);
 
-                if (Files.exists(path)) {
-                    PathsUtil.delete(path);
-                }
-                PathsUtil.createFile(path);
-
                 try {
-                    Urls._transferStreamsWithHash(hash, Urls._getInputStreamOfUrl(url, SharedConstrains.DYNAMIC_PACK_HTTPS_FILE_SIZE_LIMIT, controller), Files.newOutputStream(path), controller);
-                    FilesLog.writtenByUrl(path, url);
+                    if (Urls.downloadFileResumable(url, path, hash, SharedConstrains.DYNAMIC_PACK_HTTPS_FILE_SIZE_LIMIT, controller)) {
+                        FilesLog.writtenByUrl(path, url);
+                    }
 
                 } catch (Exception e) {
                     throw new RuntimeException("File " + path + " download error. From url: " + url + ". Expected hash: " + hash, e);
@@ -103,4 +62,60 @@ public class PackUtil {
             i--;
         }
     }
+
+    /**
+     * Write member of bundle archive to path with inline sha1; path deleted if hash not equal.
+     * Path is a staging file outside of pack: moved to pack by caller after whole bundle verified.
+     * Archive stream not closed
+     * @param limit max bytes of member
+     * @throws SecurityException if hash not equal
+     */
+    public static void extractPackFile(InputStream memberStream, Path path, String hash, long limit) throws IOException {
+        PathsUtil.createDirsToFile(path);
+        DigestInputStream digestStream = new DigestInputStream(new MemberInputStream(memberStream, limit), Hashes.newSha1Digest());
+        try {
+            Files.copy(digestStream, path, StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+
+        String extractedHash = Hashes.hex(digestStream.getMessageDigest().digest());
+        if (!extractedHash.equals(hash)) {
+            Files.deleteIfExists(path);
+            throw new SecurityException("Hash of extracted file not equal: expected: " + hash + "; actual: " + extractedHash);
+        }
+    }
+
+    // member of archive: not closes archive stream, bounded (zip bomb)
+    private static class MemberInputStream extends FilterInputStream {
+        private final long limit;
+        private long total;
+
+        private MemberInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int r = read(b, 0, 1);
+            return r == -1 ? -1 : (b[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0 && (total += read) > limit) {
+                throw new IOException("Member of archive exceeds limit " + limit + "bytes");
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
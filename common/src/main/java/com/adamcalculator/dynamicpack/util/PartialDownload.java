@@ -0,0 +1,273 @@
+package com.adamcalculator.dynamicpack.util;
+
+import com.adamcalculator.dynamicpack.SharedConstrains;
+import com.google.gson.annotations.SerializedName;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resumable download of file with known sha1.
+ * <p>Partial download kept in .part file with sidecar .part.json (url, hash and validator
+ * of response: strong ETag or Last-Modified). Next attempt or launch continues it by Range request with If-Range;
+ * if server ignores range or file changed (200 instead of 206) download restarted from zero.
+ * Target file not touched until whole file downloaded and hash equal</p>
+ * <p>Part files kept in temp dir (not inside pack, where .json listed as resources), keyed by target dir:</p>
+ * <pre>
+ * {tmpdir}/{TEMP_DIR_NAME}/parts/{sha1 of target dir}/big.ogg.part
+ * {tmpdir}/{TEMP_DIR_NAME}/parts/{sha1 of target dir}/big.ogg.part.json
+ * </pre>
+ */
+public class PartialDownload {
+    private final Path path;
+    private final Path part;
+    private final Path metaFile;
+    private final String url;
+    private final String hash;
+    @Nullable private Meta meta; // not null if download can be resumed
+    private MessageDigest digest = Hashes.newSha1Digest();
+    private long offset; // bytes in part
+
+    private PartialDownload(Path path, String url, String hash) {
+        this.path = path;
+        Path partsDir = getPartsDir(path.toAbsolutePath().getParent());
+        this.part = partsDir.resolve(path.getFileName() + SharedConstrains.DOWNLOAD_PART_SUFFIX);
+        this.metaFile = partsDir.resolve(path.getFileName() + SharedConstrains.DOWNLOAD_PART_META_SUFFIX);
+        this.url = url;
+        this.hash = hash;
+    }
+
+    /**
+     * Download url to path. Transport not checks hosts: responses checked by checker
+     * @param checker checks of response before body read (trusted host, size limit)
+     * @return false if interrupted by controller (partial download kept if resumable)
+     * @throws SecurityException if hash not equal (partial download deleted)
+     */
+    public static boolean download(HttpTransport transport, String url, Path path, String hash,
+                                   ThrowingConsumer<IOException, HttpTransport.Response> checker, @Nullable UrlsController controller) throws IOException {
+        PartialDownload download = new PartialDownload(path, url, hash);
+        download.load();
+        if (download.offset > 0 && download.isPartComplete()) {
+            // crashed before rename
+            download.finish();
+            return true;
+        }
+
+        HttpTransport.Response response;
+        try {
+            response = transport.get(url, download.getRequestHeaders());
+
+        } catch (HttpStatusException e) {
+            if (download.offset == 0 || e.getCode() != 416) {
+                throw e;
+            }
+            // Range Not Satisfiable: part not of current file
+            Out.debug("[PartialDownload] range not satisfiable, restart " + url);
+            download.discard();
+            response = transport.get(url, download.getRequestHeaders());
+        }
+
+        try {
+            checker.accept(response);
+            download.begin(response);
+
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+
+        boolean transferred;
+        try (InputStream body = response.getBody()) {
+            transferred = download.transfer(body, response.getContentLength(), controller);
+
+        } catch (IOException e) {
+            download.failed();
+            throw e;
+        }
+
+        if (!transferred) {
+            download.failed();
+            return false;
+        }
+        download.finish();
+        return true;
+    }
+
+    /**
+     * @return dir of part files for downloads to dir
+     */
+    public static Path getPartsDir(Path dir) {
+        String key = Hashes.sha1sum(dir.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        return new File(System.getProperty("java.io.tmpdir") + File.separator + SharedConstrains.TEMP_DIR_NAME,
+                SharedConstrains.DOWNLOAD_PARTS_DIR_NAME + File.separator + key).toPath();
+    }
+
+    // continue part only if sidecar of same url and hash
+    private void load() throws IOException {
+        Meta loaded = null;
+        if (Files.isRegularFile(metaFile) && Files.isRegularFile(part)) {
+            try {
+                loaded = SharedConstrains.GSON_COMPACT.fromJson(PathsUtil.readString(metaFile), Meta.class);
+            } catch (Exception e) {
+                Out.warn("[PartialDownload] corrupted " + metaFile + ": " + e);
+            }
+        }
+
+        if (loaded == null || !url.equals(loaded.url) || !hash.equals(loaded.hash) || loaded.getValidator() == null) {
+            discard();
+            return;
+        }
+
+        meta = loaded;
+        try (InputStream stream = Files.newInputStream(part)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                offset += read;
+            }
+        }
+    }
+
+    private boolean isPartComplete() {
+        try {
+            return hash.equals(Hashes.hex(((MessageDigest) digest.clone()).digest()));
+        } catch (CloneNotSupportedException e) {
+            return false;
+        }
+    }
+
+    private Map<String, String> getRequestHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        if (offset > 0 && meta != null) {
+            headers.put("Range", "bytes=" + offset + "-");
+            headers.put("If-Range", meta.getValidator());
+        }
+        return headers;
+    }
+
+    // resume by 206 of expected range; restart otherwise
+    private void begin(HttpTransport.Response response) throws IOException {
+        if (offset > 0) {
+            if (response.getCode() == HttpURLConnection.HTTP_PARTIAL) {
+                String range = response.getHeader("Content-Range");
+                if (range == null || !range.trim().startsWith("bytes " + offset + "-")) {
+                    discard();
+                    throw new IOException("Unexpected Content-Range '" + range + "' for offset " + offset + " of url " + url);
+                }
+                Out.debug("[PartialDownload] resume " + url + " from " + offset);
+                return;
+            }
+            Out.debug("[PartialDownload] server ignored range (HTTP " + response.getCode() + "), restart " + url);
+            discard();
+        }
+
+        long length = response.getContentLength();
+        Meta newMeta = new Meta(url, hash, strongEtag(response.getHeader("ETag")), response.getHeader("Last-Modified"));
+        PathsUtil.createDirsToFile(part);
+        if (newMeta.getValidator() != null && (length < 0 || length >= SharedConstrains.DOWNLOAD_RESUME_MIN_SIZE)) {
+            meta = newMeta;
+            Files.writeString(metaFile, SharedConstrains.GSON_COMPACT.toJson(meta));
+        }
+    }
+
+    // append body to part with digest
+    private boolean transfer(InputStream body, long length, @Nullable UrlsController controller) throws IOException {
+        if (controller != null && length >= 0) {
+            controller.updateMax(offset + length);
+        }
+
+        try (OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, offset > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] buffer = new byte[SharedConstrains.URLS_BUFFER_SIZE];
+            long total = offset;
+            while (true) {
+                if (UrlsController.isInterrupted(controller)) {
+                    Out.debug("[PartialDownload] interrupted " + url);
+                    return false;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted download of " + url);
+                }
+
+                long startTime = System.currentTimeMillis();
+                int read = body.read(buffer);
+                if (read == -1) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                offset += read;
+                total += read;
+                UrlsController.updateCurrent(controller, total);
+                SharedConstrains.debugNetwork(read, total);
+                NetworkStat.addLap(System.currentTimeMillis() - startTime, read);
+            }
+        }
+        return true;
+    }
+
+    private void finish() throws IOException {
+        String downloaded = Hashes.hex(digest.digest());
+        if (!downloaded.equals(hash)) {
+            discard();
+            throw new SecurityException("Hash of downloaded file not equal: expected: " + hash + "; actual: " + downloaded);
+        }
+
+        // part on other filesystem (tmpfs): copied onto target, nothing staged in pack
+        PathsUtil.moveReplacing(part, path);
+        Files.deleteIfExists(metaFile);
+    }
+
+    // keep part for next attempt if resumable
+    private void failed() throws IOException {
+        if (meta == null) {
+            discard();
+        }
+    }
+
+    private void discard() throws IOException {
+        Files.deleteIfExists(part);
+        Files.deleteIfExists(metaFile);
+        meta = null;
+        offset = 0;
+        digest = Hashes.newSha1Digest();
+    }
+
+    // weak ETag (W/"...") not allowed in If-Range
+    @Nullable
+    private static String strongEtag(@Nullable String etag) {
+        return etag == null || etag.startsWith("W/") ? null : etag;
+    }
+
+    private static class Meta {
+        private final String url;
+        private final String hash;
+        private final String etag;
+        @SerializedName("last_modified")
+        private final String lastModified;
+
+        private Meta(String url, String hash, String etag, String lastModified) {
+            this.url = url;
+            this.hash = hash;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        @Nullable
+        private String getValidator() {
+            return etag != null ? etag : lastModified;
+        }
+    }
+}
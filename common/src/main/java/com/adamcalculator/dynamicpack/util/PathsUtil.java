@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -141,6 +142,19 @@ public class PathsUtil {
     }
 
 
+    /**
+     * Move file replacing dest: atomic if possible, copied onto dest if source on other filesystem
+     */
+    public static void moveReplacing(Path source, Path dest) throws IOException {
+        createDirsToFile(dest);
+        try {
+            Files.move(source, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.copy(source, dest, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(source);
+        }
+    }
+
     /**
      * If paths parent not exists, create dirs to file
      */
@@ -0,0 +1,66 @@
+package com.adamcalculator.dynamicpack.util;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Transport by URLConnection: new connection for every request (reused only by JDK keep-alive cache).
+ * Fallback if HttpClientTransport disabled or not available
+ */
+public class UrlConnectionTransport implements HttpTransport {
+    public static final UrlConnectionTransport INSTANCE = new UrlConnectionTransport();
+
+    private UrlConnectionTransport() {
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        headers.forEach(connection::setRequestProperty);
+
+        if (connection instanceof HttpURLConnection http) {
+            int code = http.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                http.disconnect();
+                return new Response(code, http.getURL().toString(), http::getHeaderField, null);
+            }
+            if (code >= 400) {
+                http.disconnect();
+                throw new HttpStatusException(code, url);
+            }
+            return new Response(code, http.getURL().toString(), http::getHeaderField, http.getInputStream());
+        }
+        return new Response(HttpURLConnection.HTTP_OK, url, connection::getHeaderField, connection.getInputStream());
+    }
+
+    @Override
+    public Response head(String url, int timeout) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            int code = connection.getResponseCode();
+            // copy: connection disconnected
+            Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            connection.getHeaderFields().forEach((name, values) -> {
+                if (name != null && !values.isEmpty()) {
+                    headers.put(name, values.get(0));
+                }
+            });
+            return new Response(code, connection.getURL().toString(), headers::get, null);
+
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "URLConnection";
+    }
+}
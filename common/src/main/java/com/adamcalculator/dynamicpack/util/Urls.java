@@ -6,10 +6,15 @@ import com.adamcalculator.dynamicpack.SharedConstrains;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
 
@@ -17,6 +22,9 @@ import java.util.zip.GZIPInputStream;
  * Safe network utils
  */
 public class Urls {
+    public static boolean USE_HTTP_CLIENT = true;
+    private static HttpTransport httpClientTransport; // lazy
+
     public static boolean isFileDebugSchemeAllowed() {
         return SharedConstrains.isFileDebugSchemeAllowed();
     }
@@ -25,6 +33,26 @@ public class Urls {
         return SharedConstrains.isHTTPTrafficAllowed();
     }
 
+    /**
+     * Transport of network requests: shared HttpClient or URLConnection (disabled by config or HttpClient not available)
+     */
+    public static synchronized HttpTransport getTransport() {
+        if (!USE_HTTP_CLIENT) {
+            return UrlConnectionTransport.INSTANCE;
+        }
+        if (httpClientTransport == null) {
+            try {
+                httpClientTransport = new HttpClientTransport();
+
+            } catch (Exception e) {
+                Out.error("[Urls] HttpClient not available. Fallback to URLConnection", e);
+                USE_HTTP_CLIENT = false;
+                return UrlConnectionTransport.INSTANCE;
+            }
+        }
+        return httpClientTransport;
+    }
+
     /**
      * Parse text content from url with no progress
      * @param url url
@@ -52,6 +80,18 @@ public class Urls {
     }
 
 
+    /**
+     * Open stream of content from url without reading it to memory.
+     * <p>Caller must close the stream</p>
+     * @param gzipped content is GZip compressed. Returned stream is uncompressed
+     * @param limit limit of bytes received from network
+     */
+    public static InputStream openContentStream(String url, long limit, boolean gzipped, @Nullable UrlsController controller) throws IOException {
+        InputStream stream = new TrackingInputStream(_getInputStreamOfUrl(url, limit, controller), limit, controller);
+        return gzipped ? new GZIPInputStream(stream) : stream;
+    }
+
+
     /**
      * Create temp zipFile and download to it from url.
      */
@@ -67,9 +107,94 @@ public class Urls {
 
 
     /**
-     * Getting InputStream of url with checks
+     * Download file with known sha1 to path. Partial download resumed by next attempt or launch (see PartialDownload)
+     * @return false if interrupted by controller
+     * @throws SecurityException if hash not equal
      */
-    protected static InputStream _getInputStreamOfUrl(String url, long sizeLimit, @Nullable UrlsController controller) throws IOException {
+    public static boolean downloadFileResumable(String url, Path path, String hash, long limit, @Nullable UrlsController controller) throws IOException {
+        _checkUrl(url);
+
+        if (url.startsWith("file_debug_only://")) {
+            _transferToFileWithHash(hash, _getInputStreamOfUrl(url, limit, controller), path, controller);
+            return !UrlsController.isInterrupted(controller);
+        }
+
+        return PartialDownload.download(getTransport(), url, path, hash, response -> _checkResponse(url, response, limit), controller);
+    }
+
+
+    /**
+     * Same as openContentStream(), but response cached on disk and re-validated by conditional request.
+     * <p>Response 304 Not Modified is a cache hit. If cache not available works as openContentStream()</p>
+     */
+    public static InputStream openCachedContentStream(String url, long limit, boolean gzipped, @Nullable UrlsController controller) throws IOException {
+        HttpCache cache = DynamicPackMod.getHttpCache();
+        if (cache == null || url.startsWith("file_debug_only://")) {
+            return openContentStream(url, limit, gzipped, controller);
+        }
+
+        _checkUrl(url);
+        InputStream stream = null;
+        HttpCache.Entry cached = cache.get(url);
+        ConditionalResponse response = __unsafeConditionalInputStreamFromUrl(url, limit, controller, cached);
+        if (response.notModified) {
+            try {
+                stream = cache.open(cached);
+                Out.debug("[Urls] cache hit (304) " + url);
+
+            } catch (IOException e) {
+                // evicted concurrently
+                cache.remove(url);
+                response = __unsafeConditionalInputStreamFromUrl(url, limit, controller, null);
+            }
+        }
+
+        if (stream == null) {
+            InputStream network = new TrackingInputStream(response.stream, limit, controller);
+            if (response.etag != null || response.lastModified != null) {
+                stream = cache.store(url, response.etag, response.lastModified, network);
+            } else {
+                stream = network;
+            }
+        }
+        return gzipped ? new GZIPInputStream(stream) : stream;
+    }
+
+    /**
+     * Parse text content from url using HttpCache
+     */
+    public static String parseCachedTextContent(String url, long limit) throws IOException {
+        try (InputStream stream = openCachedContentStream(url, limit, false, null)) {
+            return PathsUtil.readString(stream);
+        }
+    }
+
+    /**
+     * Size of remote file by HEAD request (Content-Length) with checks
+     * @param timeout connect and read timeout in ms
+     * @return -1 if unknown
+     */
+    public static long probeContentLength(String url, int timeout) throws IOException {
+        _checkUrl(url);
+
+        if (url.startsWith("file_debug_only://")) {
+            File file = new File(DynamicPackMod.getGameDir(), url.replace("file_debug_only://", ""));
+            return file.isFile() ? file.length() : -1;
+        }
+
+        return NetworkStat.runNetworkTask(SharedConstrains.HTTP_MINIMAL_HEADER_SIZE + url.length(), () -> {
+            HttpTransport.Response response = getTransport().head(url, timeout);
+            if (response.getCode() != HttpURLConnection.HTTP_OK) {
+                return -1L;
+            }
+            return response.getContentLength();
+        });
+    }
+
+    /**
+     * Check url is allowed by scheme and trusted hosts
+     */
+    private static void _checkUrl(String url) throws IOException {
         if (url.contains(" ")) {
             throw new IOException("URL can't contains spaces!");
         }
@@ -81,28 +206,35 @@ public class Urls {
                 throw new RuntimeException("Not allowed scheme.");
             }
 
-            final File gameDir = DynamicPackMod.getGameDir();
-            File file = new File(gameDir, url.replace("file_debug_only://", ""));
-            return new FileInputStream(file);
-
-
         } else if (url.startsWith("http://")) {
             if (!isHTTPTrafficAllowed()) {
                 throw new RuntimeException("HTTP (not secure) not allowed scheme.");
             }
-
             throwIsUrlNotTrust(url);
-            return __unsafeInputStreamFromUrl(url, sizeLimit, controller);
 
         } else if (url.startsWith("https://")) {
             throwIsUrlNotTrust(url);
-            return __unsafeInputStreamFromUrl(url, sizeLimit, controller);
 
         } else {
             throw new RuntimeException("Unsupported scheme for url " + url);
         }
     }
 
+    /**
+     * Getting InputStream of url with checks
+     */
+    protected static InputStream _getInputStreamOfUrl(String url, long sizeLimit, @Nullable UrlsController controller) throws IOException {
+        _checkUrl(url);
+
+        if (url.startsWith("file_debug_only://")) {
+            final File gameDir = DynamicPackMod.getGameDir();
+            File file = new File(gameDir, url.replace("file_debug_only://", ""));
+            return new FileInputStream(file);
+        }
+
+        return __unsafeInputStreamFromUrl(url, sizeLimit, controller);
+    }
+
     /**
      * # Do not use!
      * This method return InputStream of url WITHOUT any checks, except sizeLimit
@@ -113,19 +245,84 @@ public class Urls {
 
         // wrapped by NetworkStat for speedtest works
         return NetworkStat.runNetworkTask(size, () -> {
-            URL urlObj = new URL(url);
-            URLConnection connection = urlObj.openConnection();
-            long length = connection.getContentLengthLong();
-            if (length > sizeLimit) {
-                throw new RuntimeException("File size file exceeds limit " + length + "bytes > " + sizeLimit + "bytes. url=" + url);
+            HttpTransport.Response response = getTransport().get(url, Map.of());
+            _checkResponse(url, response, sizeLimit);
+            if (controller != null) {
+                controller.updateMax(response.getContentLength());
             }
+            return response.getBody();
+        });
+    }
+
+    /**
+     * # Do not use!
+     * Conditional GET WITHOUT any checks, except sizeLimit
+     * @param cached if not null, If-None-Match and If-Modified-Since sent
+     */
+    private static ConditionalResponse __unsafeConditionalInputStreamFromUrl(String url, long sizeLimit, @Nullable UrlsController controller, @Nullable HttpCache.Entry cached) throws IOException {
+        long size = SharedConstrains.HTTP_MINIMAL_HEADER_SIZE + url.length();
+
+        return NetworkStat.runNetworkTask(size, () -> {
+            Map<String, String> headers = new HashMap<>();
+            if (cached != null) {
+                if (cached.getEtag() != null) {
+                    headers.put("If-None-Match", cached.getEtag());
+                }
+                if (cached.getLastModified() != null) {
+                    headers.put("If-Modified-Since", cached.getLastModified());
+                }
+            }
+
+            HttpTransport.Response response = getTransport().get(url, headers);
+            if (response.getCode() == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                return new ConditionalResponse(true, null, null, null);
+            }
+
+            _checkResponse(url, response, sizeLimit);
             if (controller != null) {
-                controller.updateMax(length);
+                controller.updateMax(response.getContentLength());
             }
-            return connection.getInputStream();
+            return new ConditionalResponse(false, response.getBody(), response.getHeader("ETag"), response.getHeader("Last-Modified"));
         });
     }
 
+    /**
+     * Host after redirects must be trusted too; size by Content-Length checked before body read
+     */
+    private static void _checkResponse(String url, HttpTransport.Response response, long sizeLimit) throws IOException {
+        try {
+            if (response.getBody() == null) {
+                throw new IOException("No body in response (HTTP " + response.getCode() + ") for url " + url);
+            }
+            if (!url.equals(response.getFinalUrl())) {
+                Out.debug("[Urls] redirected " + url + " -> " + response.getFinalUrl());
+                _checkUrl(response.getFinalUrl());
+            }
+            long length = response.getContentLength();
+            if (length > sizeLimit) {
+                throw new RuntimeException("File size file exceeds limit " + length + "bytes > " + sizeLimit + "bytes. url=" + url);
+            }
+
+        } catch (Exception e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    private static class ConditionalResponse {
+        private final boolean notModified;
+        private final InputStream stream;
+        private final String etag;
+        private final String lastModified;
+
+        private ConditionalResponse(boolean notModified, InputStream stream, String etag, String lastModified) {
+            this.notModified = notModified;
+            this.stream = stream;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
     protected static String _parseTextFromStream(InputStream stream, @Nullable UrlsController controller) throws IOException {
         boolean isNetwork = isNetwork(stream);
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -161,8 +358,9 @@ public class Urls {
 
     /**
      * Transfer streams and close all
+     * @return false if interrupted by controller (streams not closed)
      */
-    private static void _transferStreams(InputStream inputStream, OutputStream outputStream, @Nullable UrlsController controller) throws IOException {
+    private static boolean _transferStreams(InputStream inputStream, OutputStream outputStream, @Nullable UrlsController controller) throws IOException {
         boolean isNetwork = isNetwork(inputStream);
 
         BufferedInputStream in = new BufferedInputStream(inputStream);
@@ -172,7 +370,7 @@ public class Urls {
         while (true) {
             if (UrlsController.isInterrupted(controller)) {
                 Out.debug("interrupted _transferStreams");
-                return;
+                return false;
             }
              long startTime = System.currentTimeMillis();
             if ((bytesRead = in.read(dataBuffer, 0, SharedConstrains.URLS_BUFFER_SIZE)) == -1) {
@@ -193,46 +391,91 @@ public class Urls {
 
         in.close();
         inputStream.close();
+        return true;
     }
 
-    protected static void _transferStreamsWithHash(String hash, InputStream inputStream, OutputStream outputStream, @Nullable UrlsController controller) throws IOException {
-        boolean isNetwork = isNetwork(inputStream);
+    /**
+     * Stream to temp file next to path with inline sha1. Temp renamed to path if hash equal, deleted otherwise;
+     * file at path not touched until then. Memory usage not depends on file size
+     * <p>If interrupted by controller temp deleted and path not changed</p>
+     * @throws SecurityException if hash not equal
+     */
+    protected static void _transferToFileWithHash(String hash, InputStream inputStream, Path path, @Nullable UrlsController controller) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + SharedConstrains.DOWNLOAD_PART_SUFFIX);
+        DigestInputStream digestStream = new DigestInputStream(inputStream, Hashes.newSha1Digest());
+        boolean transferred;
+        try (digestStream; OutputStream outputStream = Files.newOutputStream(temp)) {
+            transferred = _transferStreams(digestStream, outputStream, controller);
+
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
 
-        BufferedInputStream in = new BufferedInputStream(inputStream);
-        ByteArrayOutputStream tempBufferOutputStream = new ByteArrayOutputStream();
+        if (!transferred) {
+            Files.deleteIfExists(temp);
+            return;
+        }
 
-        byte[] dataBuffer = new byte[SharedConstrains.URLS_BUFFER_SIZE];
-        int bytesRead;
-        long total = 0;
-        while (true) {
+        String hashOfDownloaded = Hashes.hex(digestStream.getMessageDigest().digest());
+        if (!hashOfDownloaded.equals(hash)) {
+            Files.deleteIfExists(temp);
+            throw new SecurityException("Hash of downloaded file not equal: expected: " + hash + "; actual: " + hashOfDownloaded);
+        }
+
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Stream updating a NetworkStat and controller while reading. Also checks a limit if server not send Content-Length
+     */
+    private static class TrackingInputStream extends FilterInputStream {
+        private final long limit;
+        @Nullable private final UrlsController controller;
+        private final boolean isNetwork;
+        private long total;
+
+        protected TrackingInputStream(InputStream in, long limit, @Nullable UrlsController controller) {
+            super(in);
+            this.limit = limit;
+            this.controller = controller;
+            this.isNetwork = isNetwork(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int r = read(b, 0, 1);
+            return r == -1 ? -1 : (b[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
             if (UrlsController.isInterrupted(controller)) {
-                Out.debug("Interrupted _transferStreamsWithHash");
-                return;
+                throw new InterruptedIOException("interrupted TrackingInputStream");
             }
 
             long startTime = System.currentTimeMillis();
-            if ((bytesRead = in.read(dataBuffer, 0, SharedConstrains.URLS_BUFFER_SIZE)) == -1) {
-                break;
+            int bytesRead = super.read(b, off, len);
+            if (bytesRead == -1) {
+                return -1;
             }
-            tempBufferOutputStream.write(dataBuffer, 0, bytesRead);
+
             total += bytesRead;
+            if (total > limit) {
+                throw new IOException("Stream exceeds limit " + limit + "bytes");
+            }
             UrlsController.updateCurrent(controller, total);
             if (isNetwork) {
                 SharedConstrains.debugNetwork(bytesRead, total);
                 NetworkStat.addLap(System.currentTimeMillis() - startTime, bytesRead);
             }
+            return bytesRead;
         }
-        in.close();
-
-        byte[] tempBufferBytes = tempBufferOutputStream.toByteArray();
-
-        String hashOfDownloaded = Hashes.sha1sum(tempBufferBytes);
-        if (hashOfDownloaded.equals(hash)) {
-            _transferStreams(new ByteArrayInputStream(tempBufferBytes), outputStream, null);
-            return;
-        }
-
-        throw new SecurityException("Hash of pre-downloaded to buffer file not equal: expected: " + hash + "; actual: " + hashOfDownloaded);
     }
 
     private static boolean isNetwork(InputStream is) {
@@ -0,0 +1,64 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.util.CompactPathSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+public class CompactPathSetTest {
+
+    @Test
+    public void sameAsHashSet() {
+        Set<String> expected = new HashSet<>();
+        CompactPathSet set = new CompactPathSet();
+        for (int i = 0; i < 5000; i++) {
+            String path = "assets/minecraft/textures/block_" + (i % 37) + "/file" + i + ".png";
+            Assertions.assertEquals(expected.add(path), set.add(path));
+        }
+        Assertions.assertFalse(set.add("assets/minecraft/textures/block_0/file0.png"));
+        Assertions.assertTrue(set.add("pack.mcmeta"));
+        expected.add("pack.mcmeta");
+        Assertions.assertTrue(set.add("a//b/"));
+        expected.add("a//b/");
+
+        Assertions.assertEquals(expected.size(), set.size());
+        Assertions.assertEquals(expected, new HashSet<>(set));
+
+        // directories are not members
+        Assertions.assertFalse(set.contains("assets/minecraft"));
+        Assertions.assertFalse(set.remove("assets/minecraft"));
+        Assertions.assertFalse(set.contains("unknown/path"));
+
+        Assertions.assertTrue(set.remove("pack.mcmeta"));
+        Assertions.assertFalse(set.contains("pack.mcmeta"));
+        expected.remove("pack.mcmeta");
+
+        Iterator<String> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().endsWith("7.png")) {
+                iterator.remove();
+            }
+        }
+        expected.removeIf(s -> s.endsWith("7.png"));
+        Assertions.assertEquals(expected, new HashSet<>(set));
+        Assertions.assertEquals(expected.size(), set.size());
+
+        set.clear();
+        Assertions.assertTrue(set.isEmpty());
+        Assertions.assertTrue(set.add("x/y"));
+        Assertions.assertTrue(set.contains("x/y"));
+    }
+
+    @Test
+    public void removeUnder() {
+        CompactPathSet set = new CompactPathSet();
+        set.addAll(List.of("a/b/1", "a/b/c/2", "a/3", "ab/4", "d/5"));
+        Assertions.assertEquals(2, set.removeUnder(List.of("a/b", "unknown")));
+        Assertions.assertEquals(Set.of("a/3", "ab/4", "d/5"), new HashSet<>(set));
+        Assertions.assertEquals(3, set.size());
+    }
+}
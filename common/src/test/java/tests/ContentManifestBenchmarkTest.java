@@ -0,0 +1,111 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.BinaryContentManifest;
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.ContentManifest;
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.adamcalculator.dynamicpack.util.JsonUtils;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parse time and allocations of content manifest: json tree vs streaming json vs binary
+ */
+public class ContentManifestBenchmarkTest {
+    private static final int FILES = 50_000;
+
+    @Test
+    public void binaryVsJson() throws Exception {
+        Out.USE_SOUT = true;
+        List<ContentManifest.FileEntry> files = new ArrayList<>();
+        StringBuilder json = new StringBuilder("{\"formatVersion\": 1, \"content\": {\"parent\": \"assets\", \"files\": {");
+        for (int i = 0; i < FILES; i++) {
+            String name = "minecraft/textures/block_" + (i % 100) + "/texture_" + i + ".png";
+            String hash = Hashes.sha1sum(("file" + i).getBytes());
+            files.add(new ContentManifest.FileEntry(name, hash, i));
+            json.append(i == 0 ? "" : ",").append('"').append(name).append("\": {\"hash\": \"").append(hash).append("\", \"size\": ").append(i).append('}');
+        }
+        json.append("}}}");
+
+        byte[] jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        String jsonHash = Hashes.sha1sum(jsonBytes);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryContentManifest.write(out, "assets", "", files);
+        byte[] binaryBytes = out.toByteArray();
+        String binaryHash = Hashes.sha1sum(binaryBytes);
+
+        // warmup
+        for (int i = 0; i < 3; i++) {
+            JsonUtils.fromString(new String(jsonBytes, StandardCharsets.UTF_8));
+            ContentManifest.read(new ByteArrayInputStream(jsonBytes), jsonHash, "json");
+            BinaryContentManifest.read(ByteBuffer.wrap(binaryBytes), binaryHash, "binary");
+        }
+
+        long[] tree = measure(() -> JsonUtils.fromString(new String(jsonBytes, StandardCharsets.UTF_8)).getAsJsonObject("content").getAsJsonObject("files").size());
+        long[] streaming = measure(() -> ContentManifest.read(new ByteArrayInputStream(jsonBytes), jsonHash, "json").getFiles().size());
+        long[] binary = measure(() -> BinaryContentManifest.read(ByteBuffer.wrap(binaryBytes), binaryHash, "binary").getFiles().size());
+
+        Out.println("Manifest of " + FILES + " files. json: " + jsonBytes.length + " bytes; binary: " + binaryBytes.length + " bytes");
+        Out.println("json tree:      " + tree[0] / 1000 + " us, allocated " + tree[1] / 1024 + " KiB");
+        Out.println("json streaming: " + streaming[0] / 1000 + " us, allocated " + streaming[1] / 1024 + " KiB");
+        Out.println("binary:         " + binary[0] / 1000 + " us, allocated " + binary[1] / 1024 + " KiB");
+
+        // same entries in both formats
+        ContentManifest jsonManifest = ContentManifest.read(new ByteArrayInputStream(jsonBytes), jsonHash, "json");
+        ContentManifest binaryManifest = BinaryContentManifest.read(ByteBuffer.wrap(binaryBytes), binaryHash, "binary");
+        Assertions.assertEquals(jsonManifest.getParent(), binaryManifest.getParent());
+        Assertions.assertEquals(FILES, binaryManifest.getFiles().size());
+        for (ContentManifest.FileEntry entry : binaryManifest.getFiles()) {
+            int i = Integer.parseInt(entry.getName().substring(entry.getName().lastIndexOf('_') + 1, entry.getName().length() - 4));
+            Assertions.assertEquals(files.get(i).getName(), entry.getName());
+            Assertions.assertEquals(files.get(i).getHash(), entry.getHash());
+            Assertions.assertEquals(i, entry.getSize());
+        }
+
+        // timings and allocations only logged: depend on JVM and load of machine
+        if (binary[1] > 0 && streaming[1] > 0) {
+            Out.println("binary allocated " + (streaming[1] / binary[1]) + "x less than json streaming");
+        }
+    }
+
+    @Test
+    public void corrupted() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryContentManifest.write(out, "", "", List.of(new ContentManifest.FileEntry("a.png", Hashes.sha1sum("a".getBytes()), 1)));
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        Assertions.assertThrows(SecurityException.class, () -> BinaryContentManifest.read(ByteBuffer.wrap(bytes), Hashes.sha1sum("x".getBytes()), "test"));
+        Assertions.assertThrows(IOException.class, () -> BinaryContentManifest.read(ByteBuffer.wrap(truncated), Hashes.sha1sum(truncated), "test"));
+    }
+
+    // {nanos, allocated bytes or -1}
+    private static long[] measure(ThrowingRunnable runnable) throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean sunBean = bean instanceof com.sun.management.ThreadMXBean b ? b : null;
+        long thread = Thread.currentThread().getId();
+
+        long allocatedBefore = sunBean != null ? sunBean.getThreadAllocatedBytes(thread) : 0;
+        long start = System.nanoTime();
+        runnable.run();
+        long time = System.nanoTime() - start;
+        long allocated = sunBean != null ? sunBean.getThreadAllocatedBytes(thread) - allocatedBefore : -1;
+        return new long[]{time, allocated};
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        Object run() throws Exception;
+    }
+}
@@ -0,0 +1,125 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.ContentManifest;
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.ContentManifestStore;
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+public class ContentManifestTest {
+    private static final String CONTENT = """
+            {
+              "content": {
+                "files": {
+                  "minecraft/lang/en_us.json": {"hash": "0123456789012345678901234567890123456789", "size": 12, "crc32": 4294967295},
+                  "minecraft/textures/a.png": {"hash": "9876543210987654321098765432109876543210", "unknown": [1, 2]}
+                },
+                "parent": "assets",
+                "remote_parent": "files",
+                "shards": [
+                  {"url": "shards/a.json", "hash": "0123456789012345678901234567890123456789"},
+                  {"url": "shards/b.json", "url_compressed": "shards/b.json.gz", "hash": "9876543210987654321098765432109876543210"}
+                ],
+                "bundles": [
+                  {"url": "bundles/all.zip", "hash": "0123456789012345678901234567890123456789"},
+                  {"url": "bundles/textures.zip", "hash": "9876543210987654321098765432109876543210", "size": 2048, "directory": "minecraft/textures"}
+                ]
+              },
+              "formatVersion": 1
+            }
+            """;
+
+    @Test
+    public void streamingRead() throws Exception {
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+        ContentManifest manifest = ContentManifest.read(new ByteArrayInputStream(bytes), Hashes.sha1sum(bytes), "test");
+
+        Assertions.assertEquals(1, manifest.getFormatVersion());
+        Assertions.assertEquals("assets", manifest.getParent());
+        Assertions.assertEquals("files", manifest.getRemoteParent());
+        Assertions.assertEquals(2, manifest.getFiles().size());
+        Assertions.assertEquals("minecraft/lang/en_us.json", manifest.getFiles().get(0).getName());
+        Assertions.assertEquals(12, manifest.getFiles().get(0).getSize());
+        Assertions.assertEquals(ContentManifest.FileEntry.UNKNOWN_SIZE, manifest.getFiles().get(1).getSize());
+        Assertions.assertEquals(0xFFFFFFFFL, manifest.getFiles().get(0).getCrc32());
+        Assertions.assertEquals(ContentManifest.FileEntry.UNKNOWN_CRC, manifest.getFiles().get(1).getCrc32());
+        Assertions.assertEquals(2, manifest.getShards().size());
+        Assertions.assertNull(manifest.getShards().get(0).getUrlCompressed());
+        Assertions.assertEquals("shards/b.json.gz", manifest.getShards().get(1).getUrlCompressed());
+        Assertions.assertEquals(2, manifest.getBundles().size());
+        Assertions.assertNull(manifest.getBundles().get(0).getDirectory());
+        Assertions.assertEquals(ContentManifest.FileEntry.UNKNOWN_SIZE, manifest.getBundles().get(0).getSize());
+        Assertions.assertEquals("minecraft/textures", manifest.getBundles().get(1).getDirectory());
+        Assertions.assertEquals(2048, manifest.getBundles().get(1).getSize());
+    }
+
+    @Test
+    public void hashMismatch() {
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertThrows(SecurityException.class, () -> ContentManifest.read(new ByteArrayInputStream(bytes), Hashes.sha1sum("other".getBytes()), "test"));
+    }
+
+    @Test
+    public void manifestStore() throws Exception {
+        Out.USE_SOUT = true;
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+        String hash = Hashes.sha1sum(bytes);
+        Path dir = Files.createTempDirectory("dynamicpack_manifests_test");
+        ContentManifestStore store = new ContentManifestStore(dir, 1024 * 1024);
+
+        Assertions.assertNull(store.read(hash, null));
+        store.readAndStore(new ByteArrayInputStream(bytes), hash, "test", null);
+        ContentManifest stored = store.read(hash, null);
+        Assertions.assertNotNull(stored);
+        Assertions.assertEquals(2, stored.getFiles().size());
+
+        // not verified content not stored
+        String otherHash = Hashes.sha1sum("other".getBytes());
+        Assertions.assertThrows(SecurityException.class, () -> store.readAndStore(new ByteArrayInputStream(bytes), otherHash, "test", null));
+        Assertions.assertNull(store.read(otherHash, null));
+
+        // tampered file in store ignored
+        Files.writeString(dir.resolve(hash + ".json"), "{}");
+        Assertions.assertNull(store.read(hash, null));
+    }
+
+    @Test
+    public void unchangedDirectoriesSkipped() throws Exception {
+        String before = """
+                {"formatVersion": 1, "content": {"parent": "assets", "directories": {"a": "d1", "a/b": "d2", "c": "d3"}, "files": {
+                  "a/b/1.png": {"hash": "0123456789012345678901234567890123456789"},
+                  "a/2.png": {"hash": "0123456789012345678901234567890123456789"},
+                  "c/3.png": {"hash": "0123456789012345678901234567890123456789"},
+                  "ab/4.png": {"hash": "0123456789012345678901234567890123456789"}
+                }}}
+                """;
+        String after = """
+                {"formatVersion": 1, "content": {"files": {
+                  "a/b/1.png": {"hash": "0123456789012345678901234567890123456789"},
+                  "a/2.png": {"hash": "0123456789012345678901234567890123456789"},
+                  "c/3.png": {"hash": "0123456789012345678901234567890123456789"},
+                  "ab/4.png": {"hash": "0123456789012345678901234567890123456789"}
+                }, "directories": {"a": "d1", "a/b": "d2", "c": "d3"}, "parent": "assets"}}
+                """;
+
+        for (String content : new String[]{before, after}) {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            ContentManifest manifest = ContentManifest.read(new ByteArrayInputStream(bytes), Hashes.sha1sum(bytes), "test",
+                    (parent, dir, digest) -> parent.equals("assets") && (digest.equals("d2") || digest.equals("d3")));
+
+            Assertions.assertEquals(3, manifest.getDirectories().size());
+            Assertions.assertEquals(Set.of("a/b", "c"), manifest.getSkippedDirectories());
+            Assertions.assertEquals(2, manifest.getSkippedFiles());
+            Assertions.assertEquals(2, manifest.getFiles().size());
+            Assertions.assertEquals("a/2.png", manifest.getFiles().get(0).getName());
+            Assertions.assertEquals("ab/4.png", manifest.getFiles().get(1).getName());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.DeltaManifest;
+import com.adamcalculator.dynamicpack.util.Hashes;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class DeltaManifestTest {
+    private static final String DELTA = """
+            {
+              "formatVersion": 2,
+              "from": 10,
+              "to": 12,
+              "contents": {
+                "main": {
+                  "parent": "assets",
+                  "changed": {
+                    "minecraft/lang/en_us.json": {"hash": "0123456789012345678901234567890123456789", "size": 12}
+                  },
+                  "deleted": ["minecraft/lang/old.json", "minecraft/lang/old2.json"]
+                },
+                "extra": {
+                  "deleted": []
+                }
+              }
+            }
+            """;
+
+    @Test
+    public void read() throws Exception {
+        byte[] bytes = DELTA.getBytes(StandardCharsets.UTF_8);
+        DeltaManifest delta = DeltaManifest.read(new ByteArrayInputStream(bytes), Hashes.sha1sum(bytes), "test");
+
+        Assertions.assertEquals(2, delta.getFormatVersion());
+        Assertions.assertEquals(10, delta.getFrom());
+        Assertions.assertEquals(12, delta.getTo());
+        Assertions.assertEquals(2, delta.getContents().size());
+
+        DeltaManifest.ContentDelta main = delta.getContents().get("main");
+        Assertions.assertEquals("assets", main.getParent());
+        Assertions.assertEquals("", main.getRemoteParent());
+        Assertions.assertEquals(1, main.getChanged().size());
+        Assertions.assertEquals(12, main.getChanged().get(0).getSize());
+        Assertions.assertEquals(2, main.getDeleted().size());
+        Assertions.assertTrue(delta.getContents().get("extra").getChanged().isEmpty());
+    }
+
+    @Test
+    public void hashMismatch() {
+        byte[] bytes = DELTA.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertThrows(SecurityException.class, () -> DeltaManifest.read(new ByteArrayInputStream(bytes), Hashes.sha1sum("x".getBytes()), "test"));
+    }
+}
@@ -0,0 +1,67 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.sync.DownloadOrder;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Total time of sync with skewed file sizes: manifest order vs random order vs largest first.
+ * Simulated makespan (each file to first free worker), 1 time unit per "KiB"
+ */
+public class DownloadOrderBenchmarkTest {
+    private static final int WORKERS = 4;
+
+    @Test
+    public void largestFirst() {
+        Out.USE_SOUT = true;
+        // 400 small files (600 units of work) and 2 big files of 300: ideal time is 300 on 4 workers
+        List<Long> sizes = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            sizes.add(1L + random.nextInt(2));
+        }
+        sizes.add(300L);
+        sizes.add(300L);
+        sizes.add(-1L); // unknown size
+
+        List<Long> shuffled = new ArrayList<>(sizes);
+        Collections.shuffle(shuffled, new Random(7));
+
+        List<Long> order = DownloadOrder.largestFirst(shuffled, Long::longValue);
+        Out.println("Sizes: " + sizes.size() + " files on " + WORKERS + " workers");
+        Out.println("big files last: " + makespan(sizes));
+        Out.println("random order:   " + makespan(shuffled));
+        Out.println("largest first:  " + makespan(order));
+
+        Assertions.assertEquals(300L, (long) order.get(0));
+        Assertions.assertEquals(300L, (long) order.get(1));
+        // LPT is within 4/3 of optimal; optimal is not less than biggest file and average load of worker
+        long total = sizes.stream().mapToLong(size -> Math.max(size, 1)).sum();
+        long lowerBound = Math.max(300, (total + WORKERS - 1) / WORKERS);
+        long sorted = makespan(order);
+        Assertions.assertTrue(sorted * 3 <= lowerBound * 4, "largest first " + sorted + " vs lower bound " + lowerBound);
+        Assertions.assertTrue(sorted < makespan(sizes), "largest first " + sorted + " vs big files last " + makespan(sizes));
+    }
+
+    // end time of last file if each file started by first free worker in list order
+    private static long makespan(List<Long> sizes) {
+        long[] workers = new long[WORKERS];
+        for (long size : sizes) {
+            int free = 0;
+            for (int i = 1; i < WORKERS; i++) {
+                if (workers[i] < workers[free]) {
+                    free = i;
+                }
+            }
+            workers[free] += Math.max(size, 1);
+        }
+        return Arrays.stream(workers).max().orElse(0);
+    }
+}
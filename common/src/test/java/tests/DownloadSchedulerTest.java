@@ -0,0 +1,86 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.sync.DownloadScheduler;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DownloadSchedulerTest {
+
+    @Test
+    public void globalAndHostLimits() throws Exception {
+        Out.USE_SOUT = true;
+        DownloadScheduler scheduler = new DownloadScheduler(() -> 6, () -> 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Map<String, AtomicInteger> runningByHost = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxByHost = new ConcurrentHashMap<>();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String host = "host" + (i % 4) + ".example.com";
+            int n = i;
+            futures.add(scheduler.submit("https://" + host + "/file" + i, () -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                int hostNow = runningByHost.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet();
+                maxByHost.computeIfAbsent(host, h -> new AtomicInteger()).accumulateAndGet(hostNow, Math::max);
+                Thread.sleep(2);
+                runningByHost.get(host).decrementAndGet();
+                running.decrementAndGet();
+                return n;
+            }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < futures.size(); i++) {
+            Assertions.assertEquals(i, (int) futures.get(i).join());
+        }
+        Assertions.assertTrue(maxRunning.get() <= 6, "global limit exceeded: " + maxRunning.get());
+        for (AtomicInteger max : maxByHost.values()) {
+            Assertions.assertTrue(max.get() <= 2, "host limit exceeded: " + max.get());
+        }
+        Assertions.assertEquals(0, scheduler.getRunning());
+        Assertions.assertEquals(2, scheduler.getHostConcurrency());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void failureAndShutdown() throws Exception {
+        Out.USE_SOUT = true;
+        DownloadScheduler scheduler = new DownloadScheduler(() -> 1, () -> 1);
+
+        CompletableFuture<Object> failed = scheduler.submit("https://example.com/a", () -> {
+            throw new IllegalStateException("failed");
+        });
+        CompletionException e = Assertions.assertThrows(CompletionException.class, failed::join);
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> blocking = scheduler.submit("https://example.com/b", () -> {
+            started.countDown();
+            Thread.sleep(60_000);
+            return null;
+        });
+        CompletableFuture<Object> waiting = scheduler.submit("https://example.com/c", () -> "never");
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        scheduler.shutdown();
+        Assertions.assertThrows(CancellationException.class, waiting::join);
+        // running task interrupted
+        Assertions.assertThrows(ExecutionException.class, () -> blocking.get(10, TimeUnit.SECONDS));
+        Assertions.assertThrows(CancellationException.class, scheduler.submit("https://example.com/d", () -> "late")::join);
+    }
+}
@@ -0,0 +1,170 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.FileStateIndex;
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class FileStateIndexTest {
+
+    @Test
+    public void cachedHashAndStatChange() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_index_test");
+        Path indexFile = dir.resolve("index.json");
+        Path file = dir.resolve("file.txt");
+        Files.writeString(file, "hello");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+
+        FileStateIndex index = FileStateIndex.load(indexFile, "dir");
+        Assertions.assertEquals(Hashes.sha1sum(file), index.getHash("file.txt", file));
+        index.save();
+
+        // reloaded index returns the cached hash while stat not changed (even if it's a lie)
+        Files.writeString(file, "HELLO");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+        FileStateIndex reloaded = FileStateIndex.load(indexFile, "dir");
+        Assertions.assertEquals(1, reloaded.size());
+        Assertions.assertEquals(Hashes.sha1sum("hello".getBytes()), reloaded.getHash("file.txt", file));
+
+        // mtime changed: re-calculated
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000));
+        Assertions.assertEquals(Hashes.sha1sum(file), reloaded.getHash("file.txt", file));
+    }
+
+    @Test
+    public void corruptedAndOutdatedIndex() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_index_test");
+        Path indexFile = dir.resolve("index.json");
+
+        Files.writeString(indexFile, "{not a json");
+        Assertions.assertEquals(0, FileStateIndex.load(indexFile, "dir").size());
+        Assertions.assertFalse(Files.exists(indexFile));
+
+        Path file = dir.resolve("file.txt");
+        Files.writeString(file, "hello");
+        FileStateIndex index = FileStateIndex.load(indexFile, "dir");
+        index.getHash("file.txt", file);
+        index.save();
+
+        // index of directory pack not valid for a zip pack
+        Assertions.assertEquals(0, FileStateIndex.load(indexFile, "zip").size());
+    }
+
+    @Test
+    public void manifestOwnership() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_index_test");
+        Path indexFile = dir.resolve("index.json");
+        Path file = dir.resolve("a.png");
+        Files.writeString(file, "a");
+
+        FileStateIndex index = FileStateIndex.load(indexFile, "dir");
+        index.getHash("assets/a.png", file);
+        index.putSynced("main|0123456789012345678901234567890123456789", List.of("assets/a.png"));
+        index.putSynced("main:sub|9876543210987654321098765432109876543210", List.of());
+        index.save();
+
+        FileStateIndex reloaded = FileStateIndex.load(indexFile, "dir");
+        Assertions.assertTrue(reloaded.isSynced("main|0123456789012345678901234567890123456789"));
+        Assertions.assertEquals(List.of("assets/a.png"), reloaded.getPathsByOwner().get("main|0123456789012345678901234567890123456789"));
+
+        // owner kept after re-hash
+        Files.writeString(file, "changed");
+        reloaded.getHash("assets/a.png", file);
+        Assertions.assertEquals(1, reloaded.getPathsByOwner().size());
+
+        // file listed by two manifests owned by both; owner dropped when manifest not synced anymore
+        reloaded.putSynced("main|1111111111111111111111111111111111111111", List.of("assets/a.png"));
+        Assertions.assertEquals(2, reloaded.getPathsByOwner().size());
+        reloaded.retainSynced("main", Set.of("main|1111111111111111111111111111111111111111"));
+        Assertions.assertEquals(List.of("assets/a.png"), reloaded.getPathsByOwner().get("main|1111111111111111111111111111111111111111"));
+        Assertions.assertNull(reloaded.getPathsByOwner().get("main|0123456789012345678901234567890123456789"));
+
+        // contents listing file
+        Assertions.assertEquals(Set.of("main"), reloaded.getOwnerContents("assets/a.png"));
+        Assertions.assertTrue(reloaded.getOwnerContents("assets/unknown.png").isEmpty());
+
+        // "main" not touches "main:sub"
+        reloaded.forgetContent("main");
+        Assertions.assertFalse(reloaded.isSynced("main|1111111111111111111111111111111111111111"));
+        Assertions.assertTrue(reloaded.isSynced("main:sub|9876543210987654321098765432109876543210"));
+        Assertions.assertTrue(reloaded.getPathsByOwner().isEmpty());
+    }
+
+    @Test
+    public void concurrentSave() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_index_test");
+        Path indexFile = dir.resolve("index.json");
+        Path file = dir.resolve("a.png");
+        Files.writeString(file, "a");
+        String hash = Hashes.sha1sum(file);
+
+        // sync and IntegrityScrubber threads
+        FileStateIndex index = FileStateIndex.load(indexFile, "dir");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    index.put("assets/" + thread + "_" + i + ".png", file, hash);
+                    index.save();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        index.save();
+
+        Assertions.assertEquals(400, FileStateIndex.load(indexFile, "dir").size());
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertEquals(0, files.filter(p -> p.toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    public void zipCentralDirectoryCrc() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_index_test");
+        Path zip = dir.resolve("pack.zip");
+        byte[] bytes = "hello zip".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + zip.toUri()), Map.of("create", "true"))) {
+            Path file = fs.getPath("assets/a.txt");
+            Files.createDirectories(file.getParent());
+            Files.write(file, bytes);
+        }
+
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + zip.toUri()), Map.of())) {
+            Path file = fs.getPath("assets/a.txt");
+            Assertions.assertEquals(crc.getValue(), FileStateIndex.zipCrcOf(file));
+
+            FileStateIndex index = FileStateIndex.load(dir.resolve("index.json"), "zip");
+            Assertions.assertNull(index.getCachedHash("assets/a.txt", file));
+            index.put("assets/a.txt", file, Hashes.sha1sum(bytes));
+            Assertions.assertEquals(Hashes.sha1sum(bytes), index.getCachedHash("assets/a.txt", file));
+        }
+        Assertions.assertEquals(-1, FileStateIndex.zipCrcOf(zip));
+    }
+}
@@ -0,0 +1,62 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.util.HttpCache;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class HttpCacheTest {
+
+    @Test
+    public void storeAndReload() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_http_cache_test");
+        HttpCache cache = HttpCache.load(dir, 1024);
+        try (InputStream stream = cache.store("https://example.com/a.json", "\"etag1\"", null, body("{\"a\":1}"))) {
+            Assertions.assertEquals("{\"a\":1}", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        HttpCache reloaded = HttpCache.load(dir, 1024);
+        HttpCache.Entry entry = reloaded.get("https://example.com/a.json");
+        Assertions.assertNotNull(entry);
+        Assertions.assertEquals("\"etag1\"", entry.getEtag());
+        try (InputStream stream = reloaded.open(entry)) {
+            Assertions.assertEquals("{\"a\":1}", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Assertions.assertNull(reloaded.get("https://example.com/b.json"));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_http_cache_test");
+        HttpCache cache = HttpCache.load(dir, 10);
+        cache.store("https://example.com/1", "1", null, body("123456")).close();
+        cache.store("https://example.com/2", "2", null, body("123456")).close();
+
+        Assertions.assertNull(cache.get("https://example.com/1"));
+        Assertions.assertNotNull(cache.get("https://example.com/2"));
+        Assertions.assertEquals(6, cache.getTotalSize());
+
+        // by order of access: 3 opened after 4 stored, so 4 evicted by 5
+        HttpCache lru = HttpCache.load(Files.createTempDirectory("dynamicpack_http_cache_test"), 8);
+        lru.store("https://example.com/3", "3", null, body("123")).close();
+        lru.store("https://example.com/4", "4", null, body("123")).close();
+        lru.open(lru.get("https://example.com/3")).close();
+        lru.store("https://example.com/5", "5", null, body("123")).close();
+
+        Assertions.assertNotNull(lru.get("https://example.com/3"));
+        Assertions.assertNull(lru.get("https://example.com/4"));
+        Assertions.assertNotNull(lru.get("https://example.com/5"));
+    }
+
+    private static InputStream body(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
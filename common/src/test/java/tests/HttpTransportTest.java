@@ -0,0 +1,81 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.util.HttpClientTransport;
+import com.adamcalculator.dynamicpack.util.HttpTransport;
+import com.adamcalculator.dynamicpack.util.Out;
+import com.adamcalculator.dynamicpack.util.UrlConnectionTransport;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class HttpTransportTest {
+
+    @Test
+    public void urlConnection() throws Exception {
+        Out.USE_SOUT = true;
+        check(UrlConnectionTransport.INSTANCE);
+    }
+
+    @Test
+    public void httpClient() throws Exception {
+        Out.USE_SOUT = true;
+        check(new HttpClientTransport());
+    }
+
+    private void check(HttpTransport transport) throws Exception {
+        byte[] body = "content".getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort();
+
+            HttpTransport.Response response = transport.get(url + "/file", Map.of());
+            Assertions.assertEquals(200, response.getCode());
+            Assertions.assertEquals(body.length, response.getContentLength());
+            Assertions.assertEquals("\"v1\"", response.getHeader("etag"));
+            try (InputStream stream = response.getBody()) {
+                Assertions.assertArrayEquals(body, stream.readAllBytes());
+            }
+
+            HttpTransport.Response notModified = transport.get(url + "/file", Map.of("If-None-Match", "\"v1\""));
+            Assertions.assertEquals(304, notModified.getCode());
+            Assertions.assertNull(notModified.getBody());
+
+            HttpTransport.Response head = transport.head(url + "/file", 5000);
+            Assertions.assertEquals(200, head.getCode());
+            Assertions.assertEquals(body.length, head.getContentLength());
+
+            Assertions.assertThrows(IOException.class, () -> transport.get(url + "/missing", Map.of()));
+
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -95,4 +95,13 @@ public class InputValidatorTest {
         });
 
     }
+
+    @Test
+    public void testHashes() {
+        Assertions.assertTrue(InputValidator.isHashValid("86f7e437faa5a7fce15d1ddcb9eaeaea377667b8"));
+        Assertions.assertFalse(InputValidator.isHashValid(null));
+        Assertions.assertFalse(InputValidator.isHashValid("86f7e437faa5a7fce15d1ddcb9eaeaea377667b"));
+        Assertions.assertFalse(InputValidator.isHashValid("../../../../../../../../../../../../x.sh"));
+        Assertions.assertFalse(InputValidator.isHashValid("86f7e437faa5a7fce15d1ddcb9eaeaea377667bz"));
+    }
 }
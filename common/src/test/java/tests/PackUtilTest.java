@@ -1,14 +1,24 @@
 package tests;
 
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.adamcalculator.dynamicpack.util.Out;
 import com.adamcalculator.dynamicpack.util.PackUtil;
+import com.adamcalculator.dynamicpack.util.PathsUtil;
 import com.adamcalculator.dynamicpack.util.ThrowingConsumer;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 public class PackUtilTest {
     @Test
@@ -37,4 +47,43 @@ public class PackUtilTest {
             }
         });
     }
+
+    @Test
+    public void extractPackFile() throws Exception {
+        Out.USE_SOUT = true;
+        byte[] a = "file a".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "file b".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bundle = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bundle)) {
+            zip.putNextEntry(new ZipEntry("a.txt"));
+            zip.write(a);
+            zip.putNextEntry(new ZipEntry("b.txt"));
+            zip.write(b);
+        }
+
+        Path dir = Files.createTempDirectory("extract_pack_file");
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bundle.toByteArray()))) {
+            zip.getNextEntry();
+            Assertions.assertThrows(SecurityException.class, () -> PackUtil.extractPackFile(zip, dir.resolve("a.txt"), Hashes.sha1sum(b), 1024));
+            Assertions.assertFalse(Files.exists(dir.resolve("a.txt")));
+
+            // archive stream not closed by member
+            zip.getNextEntry();
+            PackUtil.extractPackFile(zip, dir.resolve("sub/b.txt"), Hashes.sha1sum(b), 1024);
+            Assertions.assertArrayEquals(b, Files.readAllBytes(dir.resolve("sub/b.txt")));
+        }
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bundle.toByteArray()))) {
+            zip.getNextEntry();
+            Assertions.assertThrows(IOException.class, () -> PackUtil.extractPackFile(zip, dir.resolve("a.txt"), Hashes.sha1sum(a), 2));
+            Assertions.assertFalse(Files.exists(dir.resolve("a.txt")));
+        }
+
+        // staged member moved to pack
+        Path pack = Files.createTempDirectory("extract_pack_file_pack");
+        Files.writeString(pack.resolve("b.txt"), "old");
+        PathsUtil.moveReplacing(dir.resolve("sub/b.txt"), pack.resolve("b.txt"));
+        Assertions.assertArrayEquals(b, Files.readAllBytes(pack.resolve("b.txt")));
+        Assertions.assertFalse(Files.exists(dir.resolve("sub/b.txt")));
+    }
 }
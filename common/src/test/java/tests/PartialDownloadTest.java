@@ -0,0 +1,128 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.util.Hashes;
+import com.adamcalculator.dynamicpack.util.HttpClientTransport;
+import com.adamcalculator.dynamicpack.util.HttpTransport;
+import com.adamcalculator.dynamicpack.util.Out;
+import com.adamcalculator.dynamicpack.util.PartialDownload;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+public class PartialDownloadTest {
+    private static final byte[] BODY = new byte[3 * 1024 * 1024];
+
+    static {
+        new Random(1).nextBytes(BODY);
+    }
+
+    @Test
+    public void resumeByRange() throws Exception {
+        Out.USE_SOUT = true;
+        check(true);
+    }
+
+    @Test
+    public void restartIfRangeIgnored() throws Exception {
+        Out.USE_SOUT = true;
+        check(false);
+    }
+
+    @Test
+    public void hashMismatch() throws Exception {
+        Out.USE_SOUT = true;
+        HttpServer server = server(new AtomicBoolean(false), true, new ArrayList<>());
+        Path dir = Files.createTempDirectory("partial_download");
+        try {
+            Path path = dir.resolve("file.bin");
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+            Assertions.assertThrows(SecurityException.class, () -> PartialDownload.download(new HttpClientTransport(), url, path, Hashes.sha1sum("other".getBytes()), r -> {}, null));
+            Assertions.assertFalse(Files.exists(path));
+            Assertions.assertFalse(Files.exists(PartialDownload.getPartsDir(dir).resolve("file.bin.part")));
+            Assertions.assertFalse(Files.exists(PartialDownload.getPartsDir(dir).resolve("file.bin.part.json")));
+
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private void check(boolean supportRange) throws Exception {
+        AtomicBoolean drop = new AtomicBoolean(true);
+        List<String> ranges = new ArrayList<>();
+        HttpServer server = server(drop, supportRange, ranges);
+        Path dir = Files.createTempDirectory("partial_download");
+        try {
+            Path path = dir.resolve("file.bin");
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+            String hash = Hashes.sha1sum(BODY);
+            HttpTransport transport = new HttpClientTransport();
+
+            // connection lost in the middle: part and validator kept outside of target dir
+            Assertions.assertThrows(IOException.class, () -> PartialDownload.download(transport, url, path, hash, r -> {}, null));
+            Path part = PartialDownload.getPartsDir(dir).resolve("file.bin.part");
+            Path meta = PartialDownload.getPartsDir(dir).resolve("file.bin.part.json");
+            Assertions.assertTrue(Files.exists(part));
+            Assertions.assertTrue(Files.exists(meta));
+            try (Stream<Path> files = Files.list(dir)) {
+                Assertions.assertEquals(0, files.count());
+            }
+            long partSize = Files.size(part);
+            Assertions.assertTrue(partSize > 0 && partSize < BODY.length, "part size " + partSize);
+            Assertions.assertFalse(Files.exists(path));
+
+            Assertions.assertTrue(PartialDownload.download(transport, url, path, hash, r -> {}, null));
+            Assertions.assertArrayEquals(BODY, Files.readAllBytes(path));
+            Assertions.assertFalse(Files.exists(part));
+            Assertions.assertFalse(Files.exists(meta));
+            Assertions.assertEquals(List.of("bytes=" + partSize + "-"), ranges);
+
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    // sends half of body and drops connection while drop is set
+    private static HttpServer server(AtomicBoolean drop, boolean supportRange, List<String> ranges) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null) {
+                ranges.add(range);
+            }
+
+            int from = 0;
+            if (supportRange && range != null && "\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+                from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + (BODY.length - 1) + "/" + BODY.length);
+                exchange.sendResponseHeaders(206, BODY.length - from);
+            } else {
+                exchange.sendResponseHeaders(200, BODY.length);
+            }
+
+            OutputStream out = exchange.getResponseBody();
+            if (drop.getAndSet(false)) {
+                out.write(BODY, 0, BODY.length / 2);
+                out.flush();
+                // connection closed by server on exception
+                throw new IOException("drop connection");
+            }
+            out.write(BODY, from, BODY.length - from);
+            out.close();
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+}
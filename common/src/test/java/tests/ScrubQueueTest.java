@@ -0,0 +1,77 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.FileStateIndex;
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.ScrubQueue;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ScrubQueueTest {
+    private static final String HASH_A = "86f7e437faa5a7fce15d1ddcb9eaeaea377667b8";
+    private static final String HASH_B = "e9d71f5ee7c92d6dc9e92ffdad17b8bd49418f98";
+
+    @Test
+    public void unverifiedToCorrupt() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_scrub_test");
+        Path file = dir.resolve("scrub/pack.json");
+
+        ScrubQueue queue = ScrubQueue.load(file);
+        queue.addUnverified("assets/a.png", "https://example.com/pack", HASH_A, 1);
+        queue.addUnverified("assets/b.png", "https://example.com/pack", HASH_B, -1);
+        queue.save();
+
+        ScrubQueue reloaded = ScrubQueue.load(file);
+        Assertions.assertEquals(2, reloaded.getUnverified().size());
+        Assertions.assertEquals("https://example.com/pack", reloaded.getUnverified().get("assets/a.png").getUrlBase());
+        Assertions.assertEquals(-1, reloaded.getUnverified().get("assets/b.png").getSize());
+
+        reloaded.verified("assets/a.png");
+        reloaded.corrupt("assets/b.png");
+        reloaded.save();
+
+        reloaded = ScrubQueue.load(file);
+        Assertions.assertTrue(reloaded.getUnverified().isEmpty());
+        Assertions.assertTrue(reloaded.hasCorrupt());
+        Assertions.assertEquals(HASH_B, reloaded.getCorrupt().get("assets/b.png").getHash());
+
+        // downloaded again by sync: empty queue deleted
+        reloaded.synced(List.of("assets/b.png"));
+        reloaded.save();
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void corruptedQueue() throws Exception {
+        Out.USE_SOUT = true;
+        Path file = Files.createTempDirectory("dynamicpack_scrub_test").resolve("pack.json");
+        Files.writeString(file, "{\"unverified\": {\"a\": {\"url_base\": \"u\", \"hash\": \"not a hash\"}}, \"corrupt\": [");
+
+        ScrubQueue queue = ScrubQueue.load(file);
+        Assertions.assertTrue(queue.getUnverified().isEmpty());
+        Assertions.assertFalse(queue.hasCorrupt());
+    }
+
+    @Test
+    public void corruptFileForgetsOwners() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_scrub_test");
+        Path file = dir.resolve("a.png");
+        Files.writeString(file, "a");
+
+        FileStateIndex index = FileStateIndex.load(dir.resolve("index.json"), "dir");
+        index.getHash("assets/a.png", file);
+        Assertions.assertEquals(HASH_A, index.getKnownHash("assets/a.png"));
+        index.putSynced("main|" + HASH_B, List.of("assets/a.png"));
+        index.putSynced("other|" + HASH_B, List.of());
+
+        index.forgetCorrupt("assets/a.png");
+        Assertions.assertNull(index.getKnownHash("assets/a.png"));
+        Assertions.assertFalse(index.isSynced("main|" + HASH_B));
+        Assertions.assertTrue(index.isSynced("other|" + HASH_B));
+    }
+}
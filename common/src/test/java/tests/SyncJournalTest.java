@@ -0,0 +1,95 @@
+package tests;
+
+import com.adamcalculator.dynamicpack.pack.dynamicrepo.SyncJournal;
+import com.adamcalculator.dynamicpack.util.Out;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SyncJournalTest {
+
+    @Test
+    public void interruptedSync() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_journal_test");
+        Path file = dir.resolve("journal/pack.jsonl");
+        Path temp = dir.resolve("temp");
+        Files.createDirectories(temp.resolve("assets"));
+        Files.writeString(temp.resolve("assets/a.png"), "a");
+
+        Map<String, String> planned = new LinkedHashMap<>();
+        planned.put("assets/a.png", "86f7e437faa5a7fce15d1ddcb9eaeaea377667b8");
+        planned.put("assets/b.png", "e9d71f5ee7c92d6dc9e92ffdad17b8bd49418f98");
+
+        SyncJournal journal = SyncJournal.begin(file, temp, null);
+        journal.planned(planned);
+        journal.downloaded("assets/a.png");
+        journal.committed("assets/a.png");
+        journal.deleted("assets/old.png");
+        journal.close();
+        // crash while writing a line
+        Files.writeString(file, "{\"op\":\"downlo", StandardOpenOption.APPEND);
+
+        SyncJournal.State state = SyncJournal.read(file);
+        Assertions.assertNotNull(state);
+        Assertions.assertEquals(temp.toAbsolutePath(), state.getTempDir());
+        Assertions.assertEquals(planned, state.getPlanned());
+        Assertions.assertTrue(state.isDownloaded("assets/a.png"));
+        Assertions.assertTrue(state.isCommitted("assets/a.png"));
+        Assertions.assertFalse(state.isDownloaded("assets/b.png"));
+        Assertions.assertTrue(state.getDeleted().contains("assets/old.png"));
+
+        state.finish();
+        Assertions.assertFalse(Files.exists(file));
+        Assertions.assertFalse(Files.exists(temp.resolve("assets/a.png")));
+        Assertions.assertNull(SyncJournal.read(file));
+    }
+
+    @Test
+    public void finishedSync() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_journal_test");
+        Path file = dir.resolve("pack.jsonl");
+
+        SyncJournal journal = SyncJournal.begin(file, null, null);
+        journal.planned(Map.of("assets/a.png", "86f7e437faa5a7fce15d1ddcb9eaeaea377667b8"));
+        journal.committed("assets/a.png");
+        Assertions.assertNull(SyncJournal.read(file).getTempDir());
+
+        journal.finish();
+        Assertions.assertNull(SyncJournal.read(file));
+    }
+
+    @Test
+    public void carriedRollForward() throws Exception {
+        Out.USE_SOUT = true;
+        Path dir = Files.createTempDirectory("dynamicpack_journal_test");
+        Path file = dir.resolve("pack.jsonl");
+        Path temp = dir.resolve("temp");
+        Files.createDirectories(temp.resolve("assets"));
+        Files.writeString(temp.resolve("assets/a.png"), "a");
+
+        SyncJournal interrupted = SyncJournal.begin(file, temp, null);
+        interrupted.planned(Map.of("assets/a.png", "86f7e437faa5a7fce15d1ddcb9eaeaea377667b8"));
+        interrupted.downloaded("assets/a.png");
+        interrupted.close();
+
+        // rolled forward to .zip, not persisted: next journal still knows it
+        SyncJournal.State rolledForward = SyncJournal.read(file);
+        SyncJournal journal = SyncJournal.begin(file, temp, rolledForward);
+        journal.planned(Map.of("assets/b.png", "e9d71f5ee7c92d6dc9e92ffdad17b8bd49418f98"));
+        journal.close();
+        SyncJournal.State state = SyncJournal.read(file);
+        Assertions.assertTrue(state.isDownloaded("assets/a.png"));
+        Assertions.assertEquals(2, state.getPlanned().size());
+
+        journal.finish();
+        Assertions.assertNull(SyncJournal.read(file));
+        Assertions.assertFalse(Files.exists(temp.resolve("assets/a.png")));
+    }
+}